@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package co.gphl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Properties;
+
+import co.gphl.common.properties.GeneralProperty;
+import co.gphl.common.threads.TerminationException;
+import co.gphl.sdcp.gcal.SimcalLauncher;
+
+/**
+ * Times the per-launch overhead of {@link SimcalLauncher} in dry-run mode, with the
+ * launch plan reused between launches, and with it rebuilt for every launch (which
+ * is what used to happen).
+ */
+public class LaunchPlanTiming {
+
+    private static final int nLaunches = 10000;
+
+    public static void main(String[] args) throws IOException, TerminationException, InterruptedException {
+
+        if ( args.length != 2 )
+            throw new RuntimeException("Need working directory and path of simcal binary as arguments");
+
+        File wdir = new File(args[0]).getAbsoluteFile();
+        File input = new File(wdir, "simcal.in");
+
+        // Developer mode, with some env./opt. properties and plenty of others
+        // for the scan over the properties to wade through.
+        GeneralProperty.Namespace.setNamespace("co.gphl");
+        Properties props = System.getProperties();
+        props.setProperty("co.gphl.beamline.simcal.bin", new File(args[1]).getAbsolutePath());
+        props.setProperty(GeneralProperty.DEVMODE.getPropName(), "T");
+        props.setProperty("gphl.simcal.dry_run", "T");
+        props.setProperty("gphl.simcal.env.EXAMPLE", "1");
+        props.setProperty("gphl.all.opt.--example", "");
+        for ( int i = 0; i < 500; i++ )
+            props.setProperty("example.filler." + i, Integer.toString(i));
+
+        SimcalLauncher launcher = new SimcalLauncher("gphl", props, new StringWriter(), null, false, true);
+
+        for ( boolean reusePlan: new boolean[]{ false, true, false, true } ) {
+            long start = System.nanoTime();
+            for ( int i = 0; i < nLaunches; i++ ) {
+                if ( ! reusePlan )
+                    launcher.invalidatePlan();
+                launcher.launch(wdir, input);
+            }
+            double micros = ( System.nanoTime() - start ) / 1000.0 / nLaunches;
+            System.out.println(String.format("%s plan: %.2f us/launch over %d launches",
+                    reusePlan ? "Reused " : "Rebuilt", micros, nLaunches));
+        }
+
+    }
+
+}
@@ -0,0 +1,65 @@
+#!/bin/bash
+#
+# Copyright (c) 2026 Global Phasing Ltd.
+#
+# This Source Code Form is subject to the terms of the Mozilla Public
+# License, v. 2.0. If a copy of the MPL was not distributed with this
+# file, You can obtain one at http://mozilla.org/MPL/2.0/.
+#
+# Stands in for recen when testing RecenLauncher and RecenSession. It does no
+# calculation: the answer for (O,K,P) = (o, k, p) is always (X,Y,Z) = (1.0, 2.0, o).
+#
+# Usage: recen-session-stub.sh [--session] [--okp "O K P"] [--init-okp "O K P"] ...
+#
+# Other options are ignored. With --okp, one answer is printed, as for a one-shot
+# launch. With --session, the stub prints an answer for --init-okp, if given,
+# then "SESSION READY", then answers each "o k p" line read from standard input
+# until it is closed. A request with o = 999 gets "SESSION ERROR" instead.
+#
+# Setting RECEN_STUB_NO_SESSION makes --session an unknown option, as for a recen
+# that does not support sessions. Setting RECEN_STUB_EXTRA makes every session
+# answer follow an answer for a different setting, to check that those are skipped.
+
+session=0 okp="" init_okp=""
+while (( $# > 0 )); do
+    case $1 in
+        --session)  session=1 ;;
+        --okp)      okp=$2; shift ;;
+        --init-okp) init_okp=$2; shift ;;
+    esac
+    shift
+done
+
+answer() {
+    printf 'O,K,P = %10.4f %10.4f %10.4f X,Y,Z = %10.4f %10.4f %10.4f\n' "$1" "$2" "$3" 1.0 2.0 "$1"
+}
+
+if (( session )); then
+    if [[ -n $RECEN_STUB_NO_SESSION ]]; then
+        echo "recen-session-stub.sh: unknown option --session" >&2
+        exit 2
+    fi
+    if [[ -n $init_okp ]]; then
+        answer $init_okp
+    fi
+    echo "SESSION READY"
+    while read -r o k p; do
+        if [[ ${o%.*} == 999 ]]; then
+            echo "SESSION ERROR no solution for $o $k $p"
+            continue
+        fi
+        if [[ -n $RECEN_STUB_EXTRA ]]; then
+            answer $(( ${o%.*} + 1 )) "$k" "$p"
+        fi
+        answer "$o" "$k" "$p"
+    done
+    echo "NORMAL termination"
+    exit 0
+fi
+
+if [[ -z $okp ]]; then
+    echo "recen-session-stub.sh: no --okp given" >&2
+    exit 1
+fi
+answer $okp
+echo "NORMAL termination"
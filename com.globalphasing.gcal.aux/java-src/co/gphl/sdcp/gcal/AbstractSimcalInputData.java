@@ -10,10 +10,15 @@ package co.gphl.sdcp.gcal;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import co.gphl.common.namelist.F90NamelistData;
 import co.gphl.common.namelist.F90NamelistGroup;
@@ -39,6 +44,7 @@ public abstract class AbstractSimcalInputData extends F90NamelistImpl implements
     protected String subdir_key_name;
     File sample_in;
     protected F90NamelistData sample;
+    private transient SimcalDeckCache deckCache;
     
     // Implementing subclasses must set these fields from their input somehow,
     // depending on how they get the static part of the simcal input.
@@ -55,37 +61,102 @@ public abstract class AbstractSimcalInputData extends F90NamelistImpl implements
      *   <li>call {@link #setSample()}</li>
      * </ul>
      * 
+     * <p>If the builder has a {@link Builder#deckCache(SimcalDeckCache) deck cache}, the
+     * configuration and sample files are taken from it rather than being parsed again.
+     * The groups that {@link #isPerDeck(F90NamelistGroup)} selects, from either file, are
+     * copied for this instance, and the rest are shared with the cache and must not be
+     * modified.</p>
+     * 
      * @param builder
      * @throws IOException
      */
     protected AbstractSimcalInputData(Builder<?> builder, File simcal_config) throws IOException{
 
-        super(GcalAuxGroupFactory.factory(), "simcal", simcal_config);
+        super(GcalAuxGroupFactory.factory(), "simcal");
+        
+        if ( Objects.requireNonNull(simcal_config, "simcal_config argument must not be null").length() == 0L )
+            throw new IllegalArgumentException("File " + simcal_config.toString() + " is zero length or does not exist");
+        this.nlFile = simcal_config;
+        
+        SimcalDeckCache cache = builder.deckCache;
+        if ( cache == null ) {
+            this.read();
+            this.sample = new F90NamelistImpl(GcalAuxGroupFactory.factory(), builder.sample_in);
+        }
+        else {
+            F90NamelistData config = cache.get(simcal_config);
+            List<F90NamelistGroup> groups = new ArrayList<F90NamelistGroup>(config.size());
+            for ( int i = 0; i < config.size(); i++ ) {
+                F90NamelistGroup group = config.get(i);
+                groups.add( this.isPerDeck(group) ? cache.copy(group) : group );
+            }
+            this.addAll(groups);
+            this.sample = cache.get(builder.sample_in);
+            this.deckCache = cache;
+        }
         
         this.hkl_in=builder.hkl_in;
         this.image_root=builder.image_root;
         this.props=builder.props;
         this.subdir_key_name=builder.subdir_key_name;
         
-        this.sample = new F90NamelistImpl(GcalAuxGroupFactory.factory(), builder.sample_in);
         this.sample_in = builder.sample_in;
     }
     
+    /**
+     * Decides which groups of a cached configuration or sample file need copies of
+     * their own, because they are modified when an instance is set up. Called from the
+     * constructor, so must not depend on the state of the instance.
+     * 
+     * @param group group from the configuration or sample file
+     * @return {@code true} if {@code group} is modified by this class or its subclass
+     */
+    protected boolean isPerDeck(F90NamelistGroup group) {
+        return group instanceof LoopCountGroup || group instanceof SimcalOptionsGroup
+                || group instanceof ErrorModelGroup;
+    }
+    
+    /**
+     * Makes variants of this input, one for each delta, that share all of the namelist
+     * groups that the delta does not {@link SimcalDeckVariant#edit(int) edit}. This
+     * instance must be fully set up first, and not modified afterwards.
+     * 
+     * @param deltas changes to make for each variant, for example to the sweep settings
+     * @return variants, in the same order as {@code deltas}
+     */
+    public List<SimcalDeckVariant> variants(List<? extends Consumer<? super SimcalDeckVariant>> deltas) {
+        return SimcalDeckVariant.variants(this, deltas);
+    }
+    
     protected void setSample() {
         for ( F90NamelistGroup crystal: this.sample ) {
-            if ( crystal instanceof SimcalCrystalGroup ) {
-                this.add(crystal);
-                this.incrCount(LoopCountGroup.nCrystals);
-            }
-            else 
+            if ( ! ( crystal instanceof SimcalCrystalGroup ) )
                 throw new IllegalArgumentException( this.sample_in.toString() +
                         " contains extraneous data: expecting only " + SimcalCrystalGroup.groupName);
+            if ( this.deckCache == null )
+                this.add(crystal);
+            else if ( this.isPerDeck(crystal) )
+                this.add(this.deckCache.copy(crystal));
+            else
+                // Bypass add(), which would claim ownership of a group shared with the cache
+                this.addAll(Collections.singletonList(crystal));
         }
         
     }
     
+    /**
+     * Adds one to a loop count. Counts of crystals, sweeps and settings need not be
+     * maintained like this: they are worked out from the groups present when the
+     * input is written, so for those this method does nothing.
+     * 
+     * @param var name of a {@link LoopCountGroup} variable
+     * @deprecated add the groups that are counted instead
+     */
+    @Deprecated
     protected void incrCount(String var) {
         
+        if ( LoopCounts.isCounted(var) )
+            return;
         LoopCountGroup lcGroup = (LoopCountGroup) this.get(0);
         Integer count = lcGroup.getIntegerValue(var);
         if ( count == null )
@@ -95,6 +166,30 @@ public abstract class AbstractSimcalInputData extends F90NamelistImpl implements
         lcGroup.put(var, count);
     }
     
+    /**
+     * @param var name of a {@link LoopCountGroup} variable
+     * @return value of {@code var} that will be written out, or {@code null} if it
+     * is not set
+     */
+    public Integer getLoopCount(String var) {
+        int count = LoopCounts.count(this, var);
+        if ( count > 0 )
+            return count;
+        return this.get(0).getNumValue(Integer.class, var);
+    }
+    
+    /**
+     * Sets the loop counts that depend on the groups present.
+     * 
+     * @see LoopCounts
+     */
+    @Override
+    protected F90NamelistGroup prepareForWrite(F90NamelistGroup group) {
+        if ( group instanceof LoopCountGroup )
+            return LoopCounts.apply(this, group);
+        return group;
+    }
+    
     // Some properties are used to set variables in the namelist input.
     // Subclasses should call this method between instantiating the
     // simcal launcher and writing out the namelist input file.
@@ -135,6 +230,7 @@ public abstract class AbstractSimcalInputData extends F90NamelistImpl implements
         private String subdir_key_name;
         
         private File sample_in;
+        private SimcalDeckCache deckCache;
         
         protected abstract T self();
         
@@ -166,6 +262,15 @@ public abstract class AbstractSimcalInputData extends F90NamelistImpl implements
             return self();
         }
         
+        /**
+         * @param deckCache cache of parsed configuration and sample files, which
+         * may be shared by many builders, or {@code null} to parse them every time
+         */
+        public T deckCache(SimcalDeckCache deckCache) {
+            this.deckCache = deckCache;
+            return self();
+        }
+        
     }
     
     
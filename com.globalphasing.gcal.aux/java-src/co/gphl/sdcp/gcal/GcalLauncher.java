@@ -8,11 +8,25 @@
 
 package co.gphl.sdcp.gcal;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -22,13 +36,22 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import co.gphl.common.namelist.NamelistData;
 import co.gphl.common.properties.ApplicationSpec;
 import co.gphl.common.properties.GeneralProperty;
+import co.gphl.common.properties.PropertyContext;
 import co.gphl.common.threads.ProcessLauncher;
+import co.gphl.common.threads.ProcessResult;
+import co.gphl.common.threads.ProcessTimeoutException;
 import co.gphl.common.threads.TerminationException;
 
 /**
@@ -53,7 +76,8 @@ public abstract class GcalLauncher {
     protected String outfileName;
     private boolean uniqueFilenames;
     
-    private static Map<String, String> propNames = null;
+    // Built in full before being published, as launchers may be created concurrently
+    private static volatile Map<String, String> propNames = null;
     protected Map<String, String> args = new HashMap<String, String>();
     protected Map<String, String> env = new HashMap<String, String>();
     
@@ -61,6 +85,21 @@ public abstract class GcalLauncher {
     private Writer stdoutWriter, stderrWriter;
     protected File stdout, stderr;
     protected String lastErrLine = null;
+    private Integer threadLimit = null;
+    private double timeout = 0.0;
+    private Consumer<? super ProcessResult> metricsListener = null;
+    private transient LaunchCache launchCache = null;
+    private transient StringBuilder stdoutCapture = null;
+    private boolean cacheHit = false;
+    private transient volatile LaunchPlan plan = null;
+    // Bumped whenever the properties are known to have changed
+    private transient volatile long propsVersion = 0L;
+    private File scratchDir = null;
+    private transient byte[] pipedInput = null;
+    private transient byte[] outputContent = null;
+    
+    private static final Pattern truePattern = Pattern.compile("^[tTyY]");
+    private static final Pattern falsePattern = Pattern.compile("^[fFnN]");
     
     // It may seem a bit fussy to define these as constants, but
     // doing so makes them visible in the Javadocs.
@@ -96,16 +135,23 @@ public abstract class GcalLauncher {
      */
     public static final String UNIQUE_FILENAMES = "unique_filenames";
     
+    /**
+     * Name of property used to set a limit in seconds on the run time of the application,
+     * after which it is killed. Zero or unset means no limit.
+     */
+    public static final String TIMEOUT = "timeout";
+    
     protected Map<String, String> getPropNames() {
 
         if ( GcalLauncher.propNames == null ) {
-            GcalLauncher.propNames = new HashMap<String, String>(); 
+            Map<String, String> names = new HashMap<String, String>();
             // Values that start with "-" are command-line options
             // Values that start with uppercase letters are environment variables.
-            propNames.put(GcalLauncher.NTHREADS, "--nthreads");
-            propNames.put(GcalLauncher.OMPSTACKSIZE, "OMP_STACKSIZE");
-            propNames.put(GcalLauncher.OMPTHREADLIMIT, "OMP_THREAD_LIMIT");
-            propNames.put(GcalLauncher.OMPNUMTHREADS, "OMP_NUM_THREADS");
+            names.put(GcalLauncher.NTHREADS, "--nthreads");
+            names.put(GcalLauncher.OMPSTACKSIZE, "OMP_STACKSIZE");
+            names.put(GcalLauncher.OMPTHREADLIMIT, "OMP_THREAD_LIMIT");
+            names.put(GcalLauncher.OMPNUMTHREADS, "OMP_NUM_THREADS");
+            GcalLauncher.propNames = names;
         }
 
         return Collections.unmodifiableMap(GcalLauncher.propNames);
@@ -158,7 +204,7 @@ public abstract class GcalLauncher {
                 this.appSpec.getDefaultValue());
         this.properties = properties != null ? properties : System.getProperties();
 
-        this.setupProperties();
+        this.plan = PropertyContext.with(this.getScopedProperties(), this::newLaunchPlan);
         
         this.stdoutWriter = stdoutWriter;
         this.stderrWriter = stderrWriter;
@@ -169,27 +215,318 @@ public abstract class GcalLauncher {
         
     public final void launch(File wdir, File input)
             throws TerminationException, IOException, InterruptedException {
+        this.check(this.execute(wdir, input));
+    }
+    
+    /**
+     * Launches the application as {@link #launch(File, File)} does, but reports how it
+     * ended through {@link ProcessResult#getTermination()} instead of by throwing a
+     * {@link TerminationException}. The application is only taken to have terminated
+     * normally if it exits with status 0 and the last line of its standard output is
+     * {@code NORMAL termination}. The post-launch step is only run if it did.
+     * 
+     * @param wdir working directory
+     * @param input input file
+     * @return result of the process, or {@code null} in dry-run mode or if the result
+     * was {@link #wasCacheHit() taken from the cache}
+     * @throws IOException
+     * @throws InterruptedException if interrupted while waiting. The application is killed.
+     */
+    public final ProcessResult execute(File wdir, File input) throws IOException, InterruptedException {
+        return this.withProperties( () -> {
+            this.outputContent = null;
+            this._pre_launch(wdir, input);
+            ProcessResult result = this._launch(wdir, input);
+            if ( result == null || result.isNormal() )
+                this._post_launch(wdir, input);
+            return result;
+        } );
+    }
+    
+    /**
+     * Launches the application with input held in memory, so that the input and, optionally,
+     * the output need never be written to the working directory. This takes disk I/O
+     * off the critical path for short runs where the working directory is on a slow
+     * or shared file system.
+     * 
+     * <p>With {@link InputHandoff#TMPFS} or {@link InputHandoff#PIPE}, the application
+     * is run in a new directory under the {@link #setScratchDir(File) scratch directory},
+     * which is deleted afterwards. The contents of the output file are then available
+     * from {@link #getOutputContent()}. If {@code copyOutput} is set, the input and
+     * the files written by the application are first copied to {@code wdir}, and
+     * {@link #getOutputFile()} refers to the copy there; otherwise it returns {@code null}.</p>
+     * 
+     * <p>The input is written with the platform default encoding, as for
+     * {@link NamelistData#write(File)}.</p>
+     * 
+     * @param wdir working directory
+     * @param input input for the application
+     * @param handoff how the input is passed to the application
+     * @param copyOutput whether the input and output are copied to {@code wdir} when
+     * the application has been run elsewhere. Ignored for {@link InputHandoff#FILE}.
+     * @throws TerminationException
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public final void launch(File wdir, NamelistData input, InputHandoff handoff, boolean copyOutput)
+            throws TerminationException, IOException, InterruptedException {
+        
+        this.outputContent = null;
+        
+        if ( handoff == InputHandoff.FILE ) {
+            File infile = this.newInputFile(wdir);
+            input.write(infile);
+            this.launch(wdir, infile);
+            return;
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        try ( Writer writer = new OutputStreamWriter(bytes, Charset.defaultCharset()) ) {
+            input.write(writer);
+        }
+        byte[] content = bytes.toByteArray();
+        
+        File scratch = Files.createTempDirectory(this.getScratchDir().toPath(),
+                this.appSpec.getDefaultValue() + "_").toFile();
+        try {
+            File infile = this.newInputFile(scratch);
+            Thread feeder = null;
+            if ( handoff == InputHandoff.PIPE && GcalLauncher.makeFifo(infile) )
+                feeder = GcalLauncher.startFeeder(infile, content);
+            else
+                Files.write(infile.toPath(), content);
+            
+            this.pipedInput = feeder == null ? null : content;
+            try {
+                this.launch(scratch, infile);
+            }
+            finally {
+                this.pipedInput = null;
+                if ( feeder != null )
+                    GcalLauncher.releaseFeeder(feeder, infile);
+            }
+            
+            File output = this.getOutputFile();
+            if ( output != null ) {
+                if ( ! output.isAbsolute() )
+                    output = new File(scratch, output.getPath());
+                if ( output.isFile() )
+                    this.outputContent = Files.readAllBytes(output.toPath());
+            }
+            
+            if ( copyOutput ) {
+                Files.write(new File(wdir, infile.getName()).toPath(), content);
+                try ( DirectoryStream<Path> files = Files.newDirectoryStream(scratch.toPath()) ) {
+                    for ( Path file: files ) {
+                        if ( Files.isRegularFile(file) && ! file.equals(infile.toPath()) )
+                            Files.copy(file, wdir.toPath().resolve(file.getFileName()),
+                                    StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+            
+            // Nothing may refer to the scratch directory once it has gone
+            this.stdout = GcalLauncher.relocate(this.stdout, scratch, copyOutput ? wdir : null);
+            this.stderr = GcalLauncher.relocate(this.stderr, scratch, copyOutput ? wdir : null);
+            File outfile = GcalLauncher.relocate(this.outfileName == null ? null : new File(this.outfileName),
+                    scratch, copyOutput ? wdir : null);
+            this.outfileName = outfile == null ? null : outfile.toString();
+        }
+        finally {
+            GcalLauncher.deleteTree(scratch.toPath());
+        }
+    }
+    
+    /**
+     * Launches the application without waiting for it to finish. The steps are the
+     * same as for {@link #launch(File, File)}, but the checks on how the application
+     * terminated and the post-launch step are run when the process has finished, on the
+     * thread that supervises asynchronously launched processes.
+     * 
+     * <p>This launcher must not be used for another launch until the returned future
+     * has completed.</p>
+     * 
+     * @param wdir working directory
+     * @param input input file
+     * @return future that completes with the result of the process ({@code null} in
+     * dry-run mode, or if the result was {@link #wasCacheHit() taken from the cache}), or completes exceptionally with a {@link TerminationException}
+     * if the application terminated abnormally or was killed because it exceeded its
+     * {@link #TIMEOUT timeout}. Cancelling the future kills the application, and the
+     * post-launch step is not run.
+     * @throws IOException if the process could not be started
+     * @see ProcessLauncher#startAsync(Writer, Writer, File, File, boolean, boolean)
+     */
+    public final CompletableFuture<ProcessResult> launchAsync(File wdir, File input) throws IOException {
+        try {
+            return this.withProperties( () -> this.startAsync(wdir, input) );
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException("BUG: starting an asynchronous launch does not wait", e);
+        }
+    }
+    
+    // Called by launchAsync in the launcher's property context
+    private CompletableFuture<ProcessResult> startAsync(File wdir, File input) throws IOException {
+        
         this._pre_launch(wdir, input);
-        this._launch(wdir, input);
-        this._post_launch(wdir, input);
+        
+        ProcessLauncher launcher = this.newProcessLauncher(wdir, input);
+        String cacheKey = launcher == null ? null : this.cacheKey(input);
+        if ( launcher == null || ( cacheKey != null && this.restoreFromCache(cacheKey, wdir) ) ) {
+            this._post_launch(wdir, input);
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        CompletableFuture<ProcessResult> process = launcher.startAsync(
+                this.stdoutWriter == null ? new PrintWriter(System.out): this.stdoutWriter,
+                this.stderrWriter == null ? null : this.stderrWriter,
+                this.stdout, this.stderr, false, true);
+        // Runs on another thread, so needs a property context of its own
+        CompletableFuture<ProcessResult> launch = process.thenApply( processResult ->
+            PropertyContext.with(this.getScopedProperties(), () -> {
+                ProcessResult result = this.classify(processResult);
+                try {
+                    this.check(result);
+                }
+                catch (TerminationException e) {
+                    throw new CompletionException(e);
+                }
+                if ( cacheKey != null )
+                    this.storeInCache(cacheKey, wdir);
+                this._post_launch(wdir, input);
+                return result;
+            } ) );
+        
+        // Cancellation does not propagate back up a chain of futures by itself
+        launch.whenComplete( (r, t) -> {
+            if ( launch.isCancelled() )
+                process.cancel(true);
+        } );
+        
+        return launch;
+    }
+    
+    /**
+     * Returns the properties that {@link ApplicationSpec}s and other
+     * {@link co.gphl.common.properties.PropertyDefinition}s are resolved against while
+     * this launcher is working. By default they are resolved against whatever properties
+     * are in force on the calling thread; subclasses that need their own can return them
+     * here, instead of changing the properties for every thread.
+     * 
+     * @return properties to use, or {@code null} to use those in force
+     * @see PropertyContext
+     */
+    protected Properties getScopedProperties() {
+        return null;
+    }
+    
+    // A step of a launch, which may fail in the ways that a launch may
+    @FunctionalInterface
+    private interface LaunchStep<T> {
+        T call() throws IOException, InterruptedException;
+    }
+    
+    // Carries the checked exception of a LaunchStep out of PropertyContext.with
+    private static final class LaunchStepException extends RuntimeException {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private LaunchStepException(Exception cause) {
+            super(cause);
+        }
+    }
+    
+    // Runs step in the property context of getScopedProperties()
+    private <T> T withProperties(LaunchStep<T> step) throws IOException, InterruptedException {
+        try {
+            return PropertyContext.with(this.getScopedProperties(), () -> {
+                try {
+                    return step.call();
+                }
+                catch (IOException | InterruptedException e) {
+                    throw new LaunchStepException(e);
+                }
+            } );
+        }
+        catch (LaunchStepException e) {
+            if ( e.getCause() instanceof InterruptedException )
+                throw (InterruptedException) e.getCause();
+            throw (IOException) e.getCause();
+        }
     }
     
     protected void _pre_launch(File wdir, File input) {
         
     }
     
-    private void _launch(File wdir, File infile) throws TerminationException, IOException, InterruptedException {
+    // Returns null in dry-run mode or on a cache hit
+    private ProcessResult _launch(File wdir, File infile) throws IOException, InterruptedException {
 
-        this.setupProperties();
+        ProcessLauncher launcher = this.newProcessLauncher(wdir, infile);
+        if ( launcher == null )
+            return null;
+        
+        String cacheKey = this.cacheKey(infile);
+        if ( cacheKey != null && this.restoreFromCache(cacheKey, wdir) )
+            return null;
+        
+        ProcessResult result = this.classify(launcher.execute(
+                this.stdoutWriter == null ? new PrintWriter(System.out): this.stdoutWriter,
+                this.stderrWriter == null ? null : this.stderrWriter,
+                this.stdout, this.stderr, false, true));
+        
+        if ( cacheKey != null && result.isNormal() )
+            this.storeInCache(cacheKey, wdir);
+        return result;
+    }
+    
+    // Sets up the command line, environment and output files for a launch.
+    // Returns null in dry-run mode.
+    private ProcessLauncher newProcessLauncher(File wdir, File infile) {
+        
+        ProcessBuilder processBuilder = this.newProcessBuilder(wdir, infile);
+        if ( processBuilder == null )
+            return null;
+        
+        Consumer<String> lineSink = this._line_sink();
+        this.stdoutCapture = null;
+        if ( this.launchCache != null ) {
+            // Keep a copy of stdout to store in the cache
+            StringBuilder capture = new StringBuilder();
+            this.stdoutCapture = capture;
+            Consumer<String> captureSink = line -> capture.append(line).append('\n');
+            lineSink = lineSink == null ? captureSink : captureSink.andThen(lineSink);
+        }
+        
+        ProcessLauncher launcher = new ProcessLauncher(processBuilder);
+        launcher.setMetricsListener(this.metricsListener);
+        launcher.setLineSink(lineSink);
+        double timeout = this.plan.timeout;
+        if ( timeout > 0.0 )
+            launcher.setTimeout(Math.round(timeout * 1000.0), TimeUnit.MILLISECONDS);
+        return launcher;
+    }
+    
+    /**
+     * Sets up the command line, environment and working directory for a launch, and
+     * the names of the files that output will be captured to.
+     * 
+     * @param wdir working directory
+     * @param infile input file
+     * @return process builder, or {@code null} in dry-run mode
+     */
+    ProcessBuilder newProcessBuilder(File wdir, File infile) {
+
+        LaunchPlan plan = this.getLaunchPlan();
+        this.cacheHit = false;
 
-        if ( this.dryrun ) {
+        if ( plan.dryrun ) {
             this.myLogger.info("In dry-run mode: will return without running " + this.appSpec.getDefaultValue());
-            return;
+            return null;
         }
         
         List<String> cmd = new ArrayList<String>(
-                Arrays.asList( this.appSpec.getPath().toString(),
-                        "--input", infile.toString() ) );
+                Arrays.asList( plan.appPath, "--input", infile.toString() ) );
 
         // If this application doesn't use --output, the implementing subclass is responsible
         // for setting this.outfileName if needed.
@@ -202,8 +539,18 @@ public abstract class GcalLauncher {
             cmd.add(this.outfileName);
         }
         
+        Map<String, String> args = plan.args, env = plan.env;
+        if ( this.threadLimit != null ) {
+            // Cap the thread counts for this launch only
+            args = new HashMap<String, String>(plan.args);
+            env = new HashMap<String, String>(plan.env);
+            GcalLauncher.capThreads(args, this.getPropNames().get(GcalLauncher.NTHREADS), this.threadLimit, false);
+            GcalLauncher.capThreads(env, this.getPropNames().get(GcalLauncher.OMPNUMTHREADS), this.threadLimit, true);
+            GcalLauncher.capThreads(env, this.getPropNames().get(GcalLauncher.OMPTHREADLIMIT), this.threadLimit, true);
+        }
+        
         String val;
-        for ( Entry<String, String> e: this.args.entrySet() ) {
+        for ( Entry<String, String> e: args.entrySet() ) {
             cmd.add(e.getKey());
             val = e.getValue();
             if ( val != null && val.length() > 0 )
@@ -214,10 +561,9 @@ public abstract class GcalLauncher {
         processBuilder.directory(wdir);
 
         Map<String, String> procEnv = processBuilder.environment();
-        if ( this.env != null )
-            procEnv.putAll(this.env);
+        if ( env != null )
+            procEnv.putAll(env);
         
-        long startTime = System.currentTimeMillis();
         this.myLogger.info("Starting " + cmd);
         
         if ( this.outputToFile ) {
@@ -230,24 +576,307 @@ public abstract class GcalLauncher {
                 this.stderr = new File( wdir, stem + ".stderr" );
         }
         
-        ProcessLauncher launcher = new ProcessLauncher(processBuilder);
-        launcher.startAndWait(
-                this.stdoutWriter == null ? new PrintWriter(System.out): this.stdoutWriter,
-                this.stderrWriter == null ? null : this.stderrWriter,
-                this.stdout, this.stderr, false, true);
-        this.myLogger.info(this.appSpec.getPath().toString() + " finished in " +
-                (System.currentTimeMillis() - startTime)/1000.0 + "s");
+        return processBuilder;
+    }
+    
+    // Reduces a thread count setting to no more than limit. If the setting
+    // is absent, it is only added if addIfAbsent is true.
+    private static void capThreads(Map<String, String> paramSet, String name, int limit, boolean addIfAbsent) {
+        
+        String val = paramSet.get(name);
+        if ( val == null || val.isEmpty() ) {
+            if ( addIfAbsent )
+                paramSet.put(name, Integer.toString(limit));
+            return;
+        }
+        
+        try {
+            if ( Integer.parseInt(val.trim()) <= limit )
+                return;
+        }
+        catch (NumberFormatException e) {
+            GcalLauncher.logger.warn("Cannot interpret thread count '{}' for {}: replacing it with {}",
+                    val, name, limit);
+        }
+        paramSet.put(name, Integer.toString(limit));
+    }
+    
+    // Makes a named pipe. Returns false if that cannot be done.
+    private static boolean makeFifo(File fifo) throws InterruptedException {
+        
+        // There is no way to do this from Java itself
+        try {
+            Files.deleteIfExists(fifo.toPath());
+            Process mkfifo = new ProcessBuilder("mkfifo", fifo.toString())
+                    .redirectErrorStream(true).start();
+            mkfifo.getInputStream().close();
+            if ( mkfifo.waitFor() == 0 )
+                return true;
+            GcalLauncher.logger.warn("mkfifo failed with status {}: using a file for input",
+                    mkfifo.exitValue());
+        }
+        catch (IOException e) {
+            GcalLauncher.logger.warn("Cannot make named pipe: using a file for input: {}", e.toString());
+        }
+        return false;
+    }
+    
+    // Writes the input into a named pipe. Opening the pipe blocks until the
+    // application opens it, so this has to be done on a separate thread.
+    private static Thread startFeeder(File fifo, byte[] content) {
+        Thread feeder = new Thread( () -> {
+            try ( OutputStream os = new FileOutputStream(fifo) ) {
+                os.write(content);
+            }
+            catch (IOException e) {
+                // The application did not read all of its input
+                GcalLauncher.logger.debug("Writing to {}: {}", fifo, e.toString());
+            }
+        }, "GcalLauncher input " + fifo.getName() );
+        feeder.setDaemon(true);
+        feeder.start();
+        return feeder;
+    }
+    
+    // Unblocks a feeder thread that the application did not read from, for example
+    // after a dry run or a cache hit, by reading the pipe ourselves.
+    private static void releaseFeeder(Thread feeder, File fifo) throws IOException, InterruptedException {
+        
+        if ( ! feeder.isAlive() )
+            return;
+        
+        // On Linux, opening a pipe for reading and writing does not block, whether or not
+        // the feeder has opened it yet, and reading only what is available never blocks.
+        try ( RandomAccessFile pipe = new RandomAccessFile(fifo, "rw");
+                FileInputStream in = new FileInputStream(pipe.getFD()) ) {
+            byte[] buf = new byte[8192];
+            while ( feeder.isAlive() ) {
+                int n = in.available();
+                if ( n > 0 )
+                    in.read(buf, 0, Math.min(n, buf.length));
+                else
+                    feeder.join(10L);
+            }
+        }
+    }
+    
+    // Maps a file in dir to the file of the same name in newDir, or to null
+    private static File relocate(File file, File dir, File newDir) {
+        if ( file == null )
+            return null;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if ( parent == null || ! parent.equals(dir.getAbsoluteFile()) )
+            return file;
+        return newDir == null ? null : new File(newDir, file.getName());
+    }
+    
+    private static void deleteTree(Path dir) {
+        try {
+            // The application may have made subdirectories of its own
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.deleteIfExists(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path subdir, IOException e) throws IOException {
+                    if ( e != null )
+                        throw e;
+                    Files.deleteIfExists(subdir);
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+        }
+        catch (IOException e) {
+            GcalLauncher.logger.warn("Could not delete scratch directory {}: {}", dir, e.toString());
+        }
+    }
+    
+    // Returns null if there is no cache
+    private String cacheKey(File infile) throws IOException {
+        
+        if ( this.launchCache == null )
+            return null;
+        
+        // Thread counts should not affect the results
+        Map<String, String> args = new HashMap<String, String>(this.plan.args);
+        Map<String, String> env = new HashMap<String, String>(this.plan.env);
+        args.remove(this.getPropNames().get(GcalLauncher.NTHREADS));
+        env.remove(this.getPropNames().get(GcalLauncher.OMPNUMTHREADS));
+        env.remove(this.getPropNames().get(GcalLauncher.OMPTHREADLIMIT));
+        
+        // Input passed through a pipe can only be read once, by the application
+        if ( this.pipedInput != null )
+            return this.launchCache.key(this.appSpec.getPath(), this.pipedInput, args, env);
+        return this.launchCache.key(this.appSpec.getPath(), infile, args, env);
+    }
+    
+    // Sets up the output as if the application had been run, if the launch
+    // is in the cache.
+    private boolean restoreFromCache(String key, File wdir) throws IOException {
+        
+        File output = this.cachedOutputFile(wdir);
+        LaunchCache.Entry entry = this.launchCache.restore(key, output == null ? null : output.toPath());
+        if ( entry == null )
+            return false;
+        
+        if ( this.stdout != null )
+            Files.write(this.stdout.toPath(), entry.stdout.getBytes(StandardCharsets.UTF_8));
+        Writer writer = this.stdoutWriter == null ? new PrintWriter(System.out): this.stdoutWriter;
+        writer.write(entry.stdout);
+        writer.flush();
         
-        this.lastErrLine = launcher.getLastErrLine();
-        if ( this.lastErrLine == null || ! this.lastErrLine.trim().equals("NORMAL termination") )
-            throw new TerminationException("Application " + cmd.get(0) + " terminated abnormally");
+        Consumer<String> lineSink = this._line_sink();
+        if ( lineSink != null ) {
+            int start = 0, end;
+            while ( ( end = entry.stdout.indexOf('\n', start) ) >= 0 ) {
+                lineSink.accept(entry.stdout.substring(start, end));
+                start = end + 1;
+            }
+        }
+        
+        this.lastErrLine = entry.lastErrLine;
+        this.cacheHit = true;
+        this.myLogger.info("Using cached result for " + this.appSpec.getPath().toString());
+        return true;
+    }
+    
+    private void storeInCache(String key, File wdir) {
+        File output = this.cachedOutputFile(wdir);
+        try {
+            this.launchCache.put(key, this.lastErrLine, this.stdoutCapture.toString(),
+                    output != null && output.isFile() ? output : null);
+        }
+        catch (IOException e) {
+            this.myLogger.warn("Could not store result of " + this.appSpec.getPath().toString()
+                    + " in cache: " + e.toString());
+        }
+    }
+    
+    // Output file other than stdout, if there is one
+    private File cachedOutputFile(File wdir) {
+        File output = this.getOutputFile();
+        if ( output == null || output.equals(this.stdout) )
+            return null;
+        return output.isAbsolute() ? output : new File(wdir, output.getPath());
+    }
+    
+    // Gcal-family applications report success in their output, not only in their
+    // exit status. Also records the last line of output for subclasses.
+    private ProcessResult classify(ProcessResult result) {
+        
+        this.myLogger.info(result.getCommand().get(0) + " finished in " +
+                result.getWallTimeMillis()/1000.0 + "s (" + result.getResourceUsage() + ")");
+        
+        // Gcal applications write their termination message to standard output
+        this.lastErrLine = result.getLastOutLine();
+        if ( result.isNormal() &&
+                ( this.lastErrLine == null || ! this.lastErrLine.trim().equals("NORMAL termination") ) )
+            return result.withTermination(ProcessResult.Termination.FAILED);
+        return result;
+    }
+    
+    // Turns an abnormal result into an exception. Nothing to check in dry-run mode
+    // or on a cache hit.
+    private void check(ProcessResult result) throws TerminationException {
+        
+        if ( result == null )
+            return;
         
+        String app = result.getCommand().get(0);
+        switch ( result.getTermination() ) {
+        case NORMAL:
+            return;
+        case TIMED_OUT:
+            throw new ProcessTimeoutException("Application " + app + " killed after exceeding timeout of "
+                    + this.plan.timeout + "s", result);
+        case CANCELLED:
+            throw new TerminationException("Application " + app + " was cancelled");
+        default:
+            if ( result.getStatus() != 0 )
+                throw new TerminationException("Application " + app + " exited with status " + result.getStatus());
+            throw new TerminationException("Application " + app + " terminated abnormally");
+        }
     }
     
     protected void _post_launch(File wdir, File infile) {
         
     }
     
+    /**
+     * Override to examine the application's output as it is produced, rather than
+     * reading it back from a file afterwards. Called once per launch.
+     * 
+     * @return consumer for lines of standard output, or {@code null} for none
+     * @see ProcessLauncher#setLineSink(Consumer)
+     */
+    protected Consumer<String> _line_sink() {
+        return null;
+    }
+    
+    /**
+     * Returns the plan for the next launch, rescanning the properties only if they
+     * have changed since the plan was made. Changes made to {@link #args} and
+     * {@link #env} since then are picked up.
+     * 
+     * @return launch plan
+     */
+    LaunchPlan getLaunchPlan() {
+        
+        LaunchPlan plan = this.plan;
+        if ( plan == null || ! plan.isCurrent(this.propsVersion, this.properties) )
+            plan = this.newLaunchPlan();
+        else
+            plan = plan.withParams(this.args, this.env);
+        this.plan = plan;
+        return plan;
+    }
+    
+    /**
+     * Sets or removes one of the properties that this launcher was given, and makes
+     * it rescan them before the next launch.
+     * 
+     * @param name property name
+     * @param value new value, or {@code null} to remove the property
+     * @see #invalidatePlan()
+     */
+    public void setProperty(String name, String value) {
+        if ( value == null )
+            this.properties.remove(name);
+        else
+            this.properties.setProperty(name, value);
+        this.invalidatePlan();
+    }
+    
+    /**
+     * Makes the launcher rescan its properties before the next launch. Changes made
+     * with {@link #setProperty(String, String)} do this by themselves. Anything else
+     * that affects a launch must call this once it has changed: for example, a change
+     * made directly to the {@link Properties} object that the launcher was given, the
+     * value of a default property, or {@link GeneralProperty#DEVMODE} when that is set
+     * elsewhere. A change that adds or removes a property is noticed anyway.
+     */
+    public synchronized void invalidatePlan() {
+        this.propsVersion++;
+        this.plan = null;
+    }
+    
+    private LaunchPlan newLaunchPlan() {
+        
+        // Take the stamp first, so that a change made while we are
+        // scanning is picked up next time
+        long version = this.propsVersion;
+        int size = this.properties.size();
+        
+        this.setupProperties();
+        
+        return new LaunchPlan(version, size,
+                this.dryrun ? null : this.appSpec.getPath().toString(),
+                this.dryrun, this.timeout, this.args, this.env);
+    }
+    
     protected void setupProperties() {
         
         // Change dryrun from current setting if specified
@@ -256,6 +885,21 @@ public abstract class GcalLauncher {
         // Use unique/temporary filenames?
         this.uniqueFilenames = propertyTrueFalse(this.propNamePrefix + GcalLauncher.UNIQUE_FILENAMES, false);
         
+        // Time limit on the run
+        String timeoutVal = this.properties.getProperty(this.propNamePrefix + GcalLauncher.TIMEOUT);
+        if ( timeoutVal != null && ! timeoutVal.trim().isEmpty() ) {
+            try {
+                this.timeout = Double.parseDouble(timeoutVal.trim());
+            }
+            catch (NumberFormatException e) {
+                throw new RuntimeException("Don't understand value of '" + timeoutVal + "' for property "
+                        + this.propNamePrefix + GcalLauncher.TIMEOUT + ".\nShould be a number of seconds");
+            }
+            if ( this.timeout < 0.0 )
+                throw new RuntimeException("Negative value " + timeoutVal + " for property "
+                        + this.propNamePrefix + GcalLauncher.TIMEOUT);
+        }
+        
         // Now setup environment variables and command-line options that are specified
         // in system properties
         String propName, propVal, propArg, oldPropVal;
@@ -358,9 +1002,9 @@ public abstract class GcalLauncher {
         String val = this.properties.getProperty(propertyName);
         if ( val == null || val.length() == 0 )
             return def;
-        if ( val.matches("^[tTyY]") )
+        if ( GcalLauncher.truePattern.matcher(val).matches() )
             return true;
-        if ( val.matches("^[fFnN]") )
+        if ( GcalLauncher.falsePattern.matcher(val).matches() )
             return false;
         
         throw new RuntimeException("Don't understand value of '" + val + "' for property " 
@@ -376,6 +1020,87 @@ public abstract class GcalLauncher {
         return this.appSpec.getDefaultValue();
     }
     
+    /**
+     * Limits the number of threads used by subsequent launches. The {@code --nthreads}
+     * option is reduced to {@code threadLimit} if it has been set to more than that,
+     * and {@code OMP_NUM_THREADS} and {@code OMP_THREAD_LIMIT} are set to no more than
+     * {@code threadLimit}. The settings derived from the properties are not changed.
+     * 
+     * @param threadLimit maximum number of threads, or {@code null} to remove the limit
+     * @throws IllegalArgumentException if {@code threadLimit < 1}
+     */
+    public void setThreadLimit(Integer threadLimit) {
+        if ( threadLimit != null && threadLimit < 1 )
+            throw new IllegalArgumentException("Thread limit must be at least 1, got " + threadLimit);
+        this.threadLimit = threadLimit;
+    }
+    
+    public Integer getThreadLimit() {
+        return this.threadLimit;
+    }
+    
+    /**
+     * Sets a listener to be given the result of every process launched, including
+     * those that fail, so that thread counts and memory settings can be sized from
+     * the {@link co.gphl.common.threads.ResourceUsage resource usage} figures.
+     * 
+     * @param metricsListener listener, or {@code null} to remove it
+     * @see ProcessLauncher#setMetricsListener(Consumer)
+     */
+    public void setMetricsListener(Consumer<? super ProcessResult> metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+    
+    /**
+     * Sets a cache of launch results. When the same application is launched with the
+     * same input, options and environment as a launch whose result is in the cache, the
+     * output file, standard output and last line of output are restored from the cache
+     * instead of running the application.
+     * 
+     * @param launchCache cache, which may be shared between launchers, or {@code null}
+     * to run every launch
+     */
+    public void setLaunchCache(LaunchCache launchCache) {
+        this.launchCache = launchCache;
+    }
+    
+    /**
+     * @return {@code true} if the result of the last launch was taken from the
+     * {@link #setLaunchCache(LaunchCache) cache}
+     */
+    public boolean wasCacheHit() {
+        return this.cacheHit;
+    }
+    
+    /**
+     * Sets the directory under which applications are run when their input is
+     * handed over {@link #launch(File, NamelistData, InputHandoff, boolean) in memory}.
+     * The default is {@code /dev/shm}, if that exists and is writable, and otherwise
+     * the directory given by the {@code java.io.tmpdir} system property.
+     * 
+     * @param scratchDir directory, which should normally be on tmpfs, or {@code null}
+     * for the default
+     */
+    public void setScratchDir(File scratchDir) {
+        this.scratchDir = scratchDir;
+    }
+    
+    public File getScratchDir() {
+        if ( this.scratchDir != null )
+            return this.scratchDir;
+        File shm = new File("/dev/shm");
+        return shm.isDirectory() && shm.canWrite() ? shm : new File(System.getProperty("java.io.tmpdir"));
+    }
+    
+    /**
+     * @return contents of the output file from the last launch with input handed over
+     * {@link #launch(File, NamelistData, InputHandoff, boolean) in memory}, other than
+     * with {@link InputHandoff#FILE}, or {@code null} if there was none
+     */
+    public byte[] getOutputContent() {
+        return this.outputContent;
+    }
+    
     public File newInputFile( File wdir ) throws IOException {
         if ( this.uniqueFilenames )
             return File.createTempFile( this.appSpec.getDefaultValue() + "_", ".in", wdir );
@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.gcal;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.gphl.common.threads.ProcessResult;
+
+/**
+ * Queue for launches of Gcal-family applications that caps the number of
+ * processes running at once, and shares the machine's cores out between them.
+ *
+ * <p>Each launch is given a {@link GcalLauncher#setThreadLimit(Integer) thread limit}
+ * of {@code totalCores / maxConcurrent} (but at least 1), so that as long as
+ * {@code maxConcurrent <= totalCores} the running applications never ask for more
+ * threads than there are cores between them.</p>
+ *
+ * <p>Launches are started with {@link GcalLauncher#launchAsync(File, File)}, so
+ * running jobs do not tie up a thread each. Queued launches are started on a single
+ * dispatching thread. A launcher instance must not be submitted again until its
+ * previous job has completed.</p>
+ *
+ * <p>Cancelling the future returned by {@link #submit(GcalLauncher, File, File)}
+ * removes a queued job from the queue, or kills the application if it is running.</p>
+ */
+public class GcalProcessPool {
+
+    private static Logger logger = LoggerFactory.getLogger(GcalProcessPool.class);
+
+    private final int maxConcurrent, totalCores, threadsPerJob;
+
+    private final Queue<Job> queue = new ArrayDeque<>();
+    private int running = 0;
+    private boolean shutdown = false;
+
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor( r -> {
+        Thread t = new Thread(r, GcalProcessPool.class.getSimpleName());
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Creates a pool that shares out the {@link Runtime#availableProcessors() available processors}.
+     *
+     * @param maxConcurrent maximum number of processes to run at once
+     */
+    public GcalProcessPool(int maxConcurrent) {
+        this(maxConcurrent, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maxConcurrent maximum number of processes to run at once
+     * @param totalCores number of cores to share between running processes
+     * @throws IllegalArgumentException {@code if ( maxConcurrent < 1 || totalCores < 1 )}
+     */
+    public GcalProcessPool(int maxConcurrent, int totalCores) {
+
+        if ( maxConcurrent < 1 || totalCores < 1 )
+            throw new IllegalArgumentException(String.format(
+                    "Need at least one process and one core, got %d and %d", maxConcurrent, totalCores));
+        if ( maxConcurrent > totalCores )
+            logger.warn("Pool allows {} concurrent processes, but there are only {} cores: "
+                    + "cores will be oversubscribed", maxConcurrent, totalCores);
+
+        this.maxConcurrent = maxConcurrent;
+        this.totalCores = totalCores;
+        this.threadsPerJob = Math.max(1, totalCores / maxConcurrent);
+    }
+
+    /**
+     * Queues a launch. The returned future completes when the application has finished,
+     * whether or not it succeeded: check {@link JobReport#getFailure()}.
+     *
+     * @param launcher launcher for the application
+     * @param wdir working directory
+     * @param input input file
+     * @return future for the report on the job
+     * @throws IllegalStateException if the pool has been shut down
+     */
+    public CompletableFuture<JobReport> submit(GcalLauncher launcher, File wdir, File input) {
+
+        Job job = new Job(Objects.requireNonNull(launcher), wdir, input);
+        synchronized (this) {
+            if ( this.shutdown )
+                throw new IllegalStateException("Pool has been shut down");
+            this.queue.add(job);
+        }
+        job.future.whenComplete( (r, t) -> {
+            if ( job.future.isCancelled() )
+                job.cancel();
+        } );
+        this.dispatcher.execute(this::dispatch);
+        return job.future;
+    }
+
+    /**
+     * Stops accepting new launches. Launches that have already been submitted
+     * are run as normal, and the dispatching thread stops once they have all finished.
+     */
+    public synchronized void shutdown() {
+        this.shutdown = true;
+        this.stopIfIdle();
+    }
+
+    /**
+     * @return {@code true} if the pool has been shut down and all its launches have finished
+     */
+    public boolean isTerminated() {
+        return this.dispatcher.isTerminated();
+    }
+
+    public int getMaxConcurrent() {
+        return this.maxConcurrent;
+    }
+
+    public int getTotalCores() {
+        return this.totalCores;
+    }
+
+    public int getThreadsPerJob() {
+        return this.threadsPerJob;
+    }
+
+    public synchronized int getQueueLength() {
+        return this.queue.size();
+    }
+
+    public synchronized int getRunning() {
+        return this.running;
+    }
+
+    // Runs on the dispatcher thread only
+    private void dispatch() {
+
+        Job job;
+        for (;;) {
+            synchronized (this) {
+                if ( this.running >= this.maxConcurrent || this.queue.isEmpty() ) {
+                    // The last jobs in the queue may just have been skipped as cancelled
+                    this.stopIfIdle();
+                    return;
+                }
+                job = this.queue.remove();
+                if ( job.future.isCancelled() )
+                    continue;
+                this.running++;
+            }
+            job.start();
+        }
+    }
+
+    private void finished(Job job, ProcessResult result, Throwable failure) {
+
+        synchronized (this) {
+            this.running--;
+        }
+
+        JobReport report = new JobReport(job, result,
+                failure instanceof CompletionException && failure.getCause() != null ?
+                        failure.getCause() : failure);
+        if ( report.failure == null )
+            logger.info("{}: {}", job.launcher.getAppName(), report);
+        else
+            logger.warn("{}: {} ({})", job.launcher.getAppName(), report, report.failure.toString());
+
+        job.future.complete(report);
+        synchronized (this) {
+            if ( ! this.stopIfIdle() )
+                this.dispatcher.execute(this::dispatch);
+        }
+    }
+
+    // Stops the dispatching thread if nothing more can be given to it. Called
+    // with the lock held.
+    private boolean stopIfIdle() {
+        if ( ! this.shutdown || this.running > 0 || ! this.queue.isEmpty() )
+            return false;
+        this.dispatcher.shutdown();
+        return true;
+    }
+
+    private class Job {
+
+        private final GcalLauncher launcher;
+        private final File wdir, input;
+        private final CompletableFuture<JobReport> future = new CompletableFuture<>();
+        private final long queuedAt = System.nanoTime();
+        private long startedAt, finishedAt;
+        private int threads;
+        private CompletableFuture<ProcessResult> launch = null;
+
+        private Job(GcalLauncher launcher, File wdir, File input) {
+            this.launcher = launcher;
+            this.wdir = wdir;
+            this.input = input;
+        }
+
+        private void start() {
+
+            this.startedAt = System.nanoTime();
+
+            // The limit only affects the process started here, so put back whatever
+            // the launcher had as soon as it has been started. A lower limit that was
+            // already set is kept.
+            Integer prevLimit = this.launcher.getThreadLimit();
+            this.threads = prevLimit == null ? GcalProcessPool.this.threadsPerJob
+                    : Math.min(prevLimit, GcalProcessPool.this.threadsPerJob);
+
+            try {
+                CompletableFuture<ProcessResult> launch;
+                this.launcher.setThreadLimit(this.threads);
+                try {
+                    launch = this.launcher.launchAsync(this.wdir, this.input);
+                }
+                finally {
+                    this.launcher.setThreadLimit(prevLimit);
+                }
+                synchronized (this) {
+                    this.launch = launch;
+                }
+                launch.whenComplete( (result, failure) -> {
+                    this.finishedAt = System.nanoTime();
+                    GcalProcessPool.this.finished(this, result, failure);
+                } );
+                // Catch a cancellation that arrived while we were starting
+                if ( this.future.isCancelled() )
+                    launch.cancel(true);
+            }
+            catch (Throwable t) {
+                this.finishedAt = System.nanoTime();
+                GcalProcessPool.this.finished(this, null, t);
+            }
+        }
+        
+        // Kills the application if it is running. A queued job is skipped when it
+        // reaches the head of the queue.
+        private void cancel() {
+            CompletableFuture<ProcessResult> launch;
+            synchronized (this) {
+                launch = this.launch;
+            }
+            if ( launch != null )
+                launch.cancel(true);
+        }
+    }
+
+    /**
+     * Timings and outcome of a launch run by a {@link GcalProcessPool}.
+     */
+    public static final class JobReport {
+
+        private final GcalLauncher launcher;
+        private final File wdir, input;
+        private final ProcessResult result;
+        private final Throwable failure;
+        private final long queueWaitNanos, runNanos;
+        private final int threads;
+
+        private JobReport(Job job, ProcessResult result, Throwable failure) {
+            this.launcher = job.launcher;
+            this.wdir = job.wdir;
+            this.input = job.input;
+            this.result = result;
+            this.failure = failure;
+            this.queueWaitNanos = job.startedAt - job.queuedAt;
+            this.runNanos = job.finishedAt - job.startedAt;
+            this.threads = job.threads;
+        }
+
+        public GcalLauncher getLauncher() {
+            return this.launcher;
+        }
+
+        public File getWdir() {
+            return this.wdir;
+        }
+
+        public File getInput() {
+            return this.input;
+        }
+
+        /**
+         * @return result of the process, or {@code null} if it was not run
+         * (dry-run mode, or failure to start it)
+         */
+        public ProcessResult getResult() {
+            return this.result;
+        }
+
+        /**
+         * @return exception that caused the launch to fail, or {@code null} if it succeeded
+         */
+        public Throwable getFailure() {
+            return this.failure;
+        }
+
+        public double getQueueWaitMillis() {
+            return this.queueWaitNanos / 1.0e6;
+        }
+
+        public double getRunMillis() {
+            return this.runNanos / 1.0e6;
+        }
+
+        /**
+         * @return thread limit that the launch was run with
+         */
+        public int getThreads() {
+            return this.threads;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("queued %.3fs, ran %.3fs with %d thread(s)",
+                    this.queueWaitNanos / 1.0e9, this.runNanos / 1.0e9, this.threads);
+        }
+    }
+
+}
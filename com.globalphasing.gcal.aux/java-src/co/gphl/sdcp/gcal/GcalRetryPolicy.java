@@ -0,0 +1,421 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.gcal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.gphl.common.threads.ProcessResult;
+import co.gphl.common.threads.TerminationException;
+
+/**
+ * Runs Gcal-family applications with retries, for failures that are likely to be
+ * transient, such as running out of memory or failing a licence check.
+ *
+ * <p>A failed launch is retried after a delay that starts at the initial backoff and
+ * is multiplied by the {@link #setBackoffMultiplier(double) backoff multiplier} for each
+ * further retry, up to the {@link #setMaxBackoff(long, TimeUnit) maximum backoff}.
+ * If {@link #setSpeculative(boolean) speculative launches} are enabled, a second
+ * launch of the same input is started when a launch has run for longer than
+ * 95% of the successful launches seen by this policy. The first to succeed wins,
+ * and the other is killed.</p>
+ *
+ * <p>Each launch gets a new launcher from the factory and its own working directory,
+ * so that concurrent and repeated launches cannot see each other's files: the first
+ * launch is run in the given working directory, retries in subdirectories
+ * {@code retry_N} of it, and speculative launches in subdirectories
+ * {@code speculative_N}. The input file is copied into each of those subdirectories
+ * and the launch is given the copy, as applications such as simcal write their output
+ * next to their input. The application must not depend on anything else that
+ * an earlier launch could have changed.</p>
+ *
+ * <p>Instances are thread-safe, and may be shared by launches of the same application
+ * so that they share a history of run times.</p>
+ */
+public class GcalRetryPolicy {
+
+    private static Logger logger = LoggerFactory.getLogger(GcalRetryPolicy.class);
+
+    /**
+     * Number of successful run times kept for working out when to start a speculative launch
+     */
+    public static final int HISTORY_SIZE = 100;
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private volatile double backoffMultiplier = 2.0;
+    private volatile long maxBackoffNanos = TimeUnit.MINUTES.toNanos(5L);
+    private volatile boolean speculative = false;
+    private volatile int minSamples = 20;
+    private volatile Predicate<? super Throwable> retryOn =
+            t -> t instanceof TerminationException || t instanceof IOException;
+
+    // Ring buffer of the run times of successful launches
+    private final long[] durations = new long[HISTORY_SIZE];
+    private int nDurations = 0, nextDuration = 0;
+    private long nRetries = 0L, nSpeculative = 0L, nSpeculativeWins = 0L;
+
+    /**
+     * @param maxAttempts maximum number of times to launch an application, including
+     * the first. Speculative launches are not counted.
+     * @param initialBackoff delay before the first retry
+     * @param unit unit of {@code initialBackoff}
+     */
+    public GcalRetryPolicy(int maxAttempts, long initialBackoff, TimeUnit unit) {
+        if ( maxAttempts < 1 || initialBackoff < 0L )
+            throw new IllegalArgumentException(String.format(
+                    "Need maxAttempts >= 1 and initialBackoff >= 0, got %d and %d", maxAttempts, initialBackoff));
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = unit.toNanos(initialBackoff);
+    }
+
+    /**
+     * @param backoffMultiplier factor by which the delay increases for each retry. Default 2.
+     */
+    public void setBackoffMultiplier(double backoffMultiplier) {
+        if ( backoffMultiplier < 1.0 )
+            throw new IllegalArgumentException("Backoff multiplier must be at least 1, got " + backoffMultiplier);
+        this.backoffMultiplier = backoffMultiplier;
+    }
+
+    /**
+     * @param maxBackoff longest delay before a retry. Default 5 minutes.
+     * @param unit unit of {@code maxBackoff}
+     */
+    public void setMaxBackoff(long maxBackoff, TimeUnit unit) {
+        if ( maxBackoff < 0L )
+            throw new IllegalArgumentException("Maximum backoff must not be negative, got " + maxBackoff);
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+    }
+
+    /**
+     * @param speculative whether to start a second launch when a launch runs for longer
+     * than 95% of earlier successful launches. Default {@code false}.
+     */
+    public void setSpeculative(boolean speculative) {
+        this.speculative = speculative;
+    }
+
+    /**
+     * @param minSamples number of successful launches that must have been seen before
+     * speculative launches are started. Default 20.
+     */
+    public void setMinSamples(int minSamples) {
+        if ( minSamples < 1 || minSamples > HISTORY_SIZE )
+            throw new IllegalArgumentException(String.format(
+                    "Need 1 <= minSamples <= %d, got %d", HISTORY_SIZE, minSamples));
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * @param retryOn test for whether a failure is worth retrying. It is given the
+     * {@link TerminationException} (including a {@link co.gphl.common.threads.ProcessTimeoutException})
+     * or {@link IOException} that the launch failed with. The default retries all of these.
+     */
+    public void setRetryOn(Predicate<? super Throwable> retryOn) {
+        this.retryOn = Objects.requireNonNull(retryOn);
+    }
+
+    /**
+     * Launches an application, retrying as set up for this policy, and waits for it
+     * to succeed or for the retries to be exhausted.
+     *
+     * @param launcherFactory creates a new, fully set up launcher for each launch
+     * @param wdir working directory
+     * @param input input file
+     * @return the successful launch
+     * @throws TerminationException if the last launch failed with one
+     * @throws IOException if the last launch failed with one
+     * @throws InterruptedException if interrupted while waiting. Running launches are killed.
+     */
+    public Outcome launch(Supplier<? extends GcalLauncher> launcherFactory, File wdir, File input)
+            throws TerminationException, IOException, InterruptedException {
+
+        Objects.requireNonNull(launcherFactory);
+        File absWdir = wdir.getAbsoluteFile(), absInput = input.getAbsoluteFile();
+
+        for ( int attempt = 1; ; attempt++ ) {
+            Throwable failure;
+            try {
+                return this.attempt(launcherFactory, absWdir, absInput, attempt);
+            }
+            catch (ExecutionException e) {
+                failure = e.getCause();
+            }
+
+            if ( attempt >= this.maxAttempts || ! this.retryOn.test(failure) ) {
+                if ( failure instanceof TerminationException )
+                    throw (TerminationException) failure;
+                if ( failure instanceof IOException )
+                    throw (IOException) failure;
+                if ( failure instanceof RuntimeException )
+                    throw (RuntimeException) failure;
+                throw new RuntimeException(failure);
+            }
+
+            long backoff = this.backoffNanos(attempt);
+            logger.warn("Launch {} in {} failed ({}): retrying in {}s", attempt, wdir, failure.toString(),
+                    backoff / 1.0e9);
+            synchronized (this) {
+                this.nRetries++;
+            }
+            TimeUnit.NANOSECONDS.sleep(backoff);
+        }
+    }
+
+    // Runs one launch, and a speculative one if it is slow. Throws ExecutionException
+    // with the last failure if neither succeeds.
+    private Outcome attempt(Supplier<? extends GcalLauncher> launcherFactory, File wdir, File input,
+            int attempt) throws ExecutionException, InterruptedException {
+
+        List<Run> runs = new ArrayList<>(2);
+        try {
+            File dir = attempt == 1 ? wdir : GcalRetryPolicy.subdir(wdir, "retry_" + (attempt - 1));
+            runs.add(new Run(launcherFactory.get(), dir,
+                    attempt == 1 ? input : GcalRetryPolicy.copyInput(input, dir), false));
+
+            long p95 = this.speculative ? this.p95Nanos() : 0L;
+            if ( p95 > 0L ) {
+                Run primary = runs.get(0);
+                try {
+                    primary.future.get(Math.max(0L, primary.startNanos + p95 - System.nanoTime()),
+                            TimeUnit.NANOSECONDS);
+                }
+                catch (TimeoutException e) {
+                    logger.info("Launch {} in {} has run for longer than {}s: starting a speculative launch",
+                            attempt, dir, p95 / 1.0e9);
+                    try {
+                        File specDir = GcalRetryPolicy.subdir(wdir, "speculative_" + attempt);
+                        runs.add(new Run(launcherFactory.get(), specDir,
+                                GcalRetryPolicy.copyInput(input, specDir), true));
+                        synchronized (this) {
+                            this.nSpeculative++;
+                        }
+                    }
+                    catch (IOException | RuntimeException e1) {
+                        logger.warn("Could not start speculative launch: {}", e1.toString());
+                    }
+                }
+                catch (ExecutionException e) {
+                    // Dealt with below
+                }
+            }
+
+            // The first to succeed wins
+            Throwable failure = null;
+            while ( ! runs.isEmpty() ) {
+                try {
+                    CompletableFuture.anyOf(runs.stream().map( r -> r.future ).toArray(CompletableFuture[]::new)).get();
+                }
+                catch (ExecutionException e) {
+                    // Found below
+                }
+                for ( Iterator<Run> it = runs.iterator(); it.hasNext(); ) {
+                    Run run = it.next();
+                    if ( ! run.future.isDone() )
+                        continue;
+                    it.remove();
+                    try {
+                        ProcessResult result = run.future.join();
+                        // Dry runs and cache hits say nothing about how long a run takes
+                        if ( result != null )
+                            this.record(System.nanoTime() - run.startNanos);
+                        if ( run.speculative ) {
+                            logger.info("Speculative launch in {} finished first", run.wdir);
+                            synchronized (this) {
+                                this.nSpeculativeWins++;
+                            }
+                        }
+                        return new Outcome(run.launcher, result, run.wdir, attempt, run.speculative);
+                    }
+                    catch (CompletionException e) {
+                        failure = e.getCause() == null ? e : e.getCause();
+                    }
+                }
+            }
+            throw new ExecutionException(failure);
+        }
+        catch (IOException e) {
+            throw new ExecutionException(e);
+        }
+        finally {
+            // Kill the losers, or everything if we were interrupted
+            for ( Run run: runs )
+                run.future.cancel(true);
+        }
+    }
+
+    private long backoffNanos(int attempt) {
+        double backoff = this.initialBackoffNanos * Math.pow(this.backoffMultiplier, attempt - 1);
+        return (long) Math.min(backoff, this.maxBackoffNanos);
+    }
+
+    private synchronized void record(long nanos) {
+        this.durations[this.nextDuration] = nanos;
+        this.nextDuration = ( this.nextDuration + 1 ) % HISTORY_SIZE;
+        if ( this.nDurations < HISTORY_SIZE )
+            this.nDurations++;
+    }
+
+    /**
+     * @return 95th percentile of the run times of successful launches, in nanoseconds,
+     * or {@code 0} if too few have been seen
+     */
+    public synchronized long p95Nanos() {
+        if ( this.nDurations < this.minSamples )
+            return 0L;
+        long[] sorted = Arrays.copyOf(this.durations, this.nDurations);
+        Arrays.sort(sorted);
+        return sorted[Math.min(this.nDurations - 1, (int) Math.ceil(0.95 * this.nDurations) - 1)];
+    }
+
+    /**
+     * @return number of retries made so far
+     */
+    public synchronized long getRetries() {
+        return this.nRetries;
+    }
+
+    /**
+     * @return number of speculative launches started so far
+     */
+    public synchronized long getSpeculativeLaunches() {
+        return this.nSpeculative;
+    }
+
+    /**
+     * @return number of speculative launches that finished first
+     */
+    public synchronized long getSpeculativeWins() {
+        return this.nSpeculativeWins;
+    }
+
+    private static File subdir(File wdir, String name) throws IOException {
+        File dir = new File(wdir, name).getAbsoluteFile();
+        if ( ! dir.isDirectory() && ! dir.mkdirs() )
+            throw new IOException("Could not create working directory " + dir);
+        return dir;
+    }
+
+    // Copy of the input for a launch in dir, so that output written next to it
+    // does not clash with that of other launches
+    private static File copyInput(File input, File dir) throws IOException {
+        File copy = new File(dir, input.getName());
+        Files.copy(input.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    // One launch in progress
+    private static final class Run {
+
+        private final GcalLauncher launcher;
+        private final File wdir;
+        private final boolean speculative;
+        private final long startNanos;
+        private final CompletableFuture<ProcessResult> future;
+
+        private Run(GcalLauncher launcher, File wdir, File input, boolean speculative)
+                throws IOException {
+            this.launcher = launcher;
+            this.wdir = wdir;
+            this.speculative = speculative;
+            this.startNanos = System.nanoTime();
+            CompletableFuture<ProcessResult> future;
+            try {
+                future = launcher.launchAsync(wdir, input);
+            }
+            catch (IOException e) {
+                // Treat like any other failure, so that it can be retried
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            this.future = future;
+        }
+    }
+
+    /**
+     * The successful launch of an application by a {@link GcalRetryPolicy}.
+     */
+    public static final class Outcome {
+
+        private final GcalLauncher launcher;
+        private final ProcessResult result;
+        private final File wdir;
+        private final int attempts;
+        private final boolean speculative;
+
+        private Outcome(GcalLauncher launcher, ProcessResult result, File wdir, int attempts,
+                boolean speculative) {
+            this.launcher = launcher;
+            this.result = result;
+            this.wdir = wdir;
+            this.attempts = attempts;
+            this.speculative = speculative;
+        }
+
+        /**
+         * @return the launcher that succeeded, for getting at its results
+         */
+        public GcalLauncher getLauncher() {
+            return this.launcher;
+        }
+
+        /**
+         * @return result of the process, or {@code null} in dry-run mode or on a cache hit
+         */
+        public ProcessResult getResult() {
+            return this.result;
+        }
+
+        /**
+         * @return working directory of the launch that succeeded
+         */
+        public File getWdir() {
+            return this.wdir;
+        }
+
+        /**
+         * @return number of attempts made, including the one that succeeded
+         */
+        public int getAttempts() {
+            return this.attempts;
+        }
+
+        /**
+         * @return {@code true} if a speculative launch finished first
+         */
+        public boolean isSpeculative() {
+            return this.speculative;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s in %s after %d attempt(s)%s", this.launcher.getAppName(), this.wdir,
+                    this.attempts, this.speculative ? ", speculative" : "");
+        }
+    }
+
+}
@@ -0,0 +1,381 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.gcal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages working directories for large numbers of Gcal-family application launches,
+ * so that no one directory accumulates more than a limited number of entries, and
+ * the files from successful launches do not pile up.
+ *
+ * <p>Each job gets its own directory, {@code root/yyyyMMdd/NNNN/name-NNNNNN}, with at
+ * most {@link #setJobsPerShard(int) a given number} of jobs in each {@code NNNN}
+ * directory. When a job is closed, the {@link Retention retention policy} is applied
+ * to its directory in the background: the directories of failed jobs are always kept.
+ * A periodic sweep deletes closed jobs older than the {@link #setExpiry(long, TimeUnit)
+ * expiry time}, failures included, and removes empty directories. Jobs that are still
+ * open are never deleted. A typical pattern is:</p>
+ *
+ * <pre>
+ *    try ( GcalWorkspace.Job job = workspace.newJob(RecenLauncher.appName) ) {
+ *        launcher.launch(job.getDir(), input);
+ *        job.succeeded();
+ *    }
+ * </pre>
+ *
+ * <p>Instances are thread-safe.</p>
+ */
+public class GcalWorkspace implements AutoCloseable {
+
+    private static Logger logger = LoggerFactory.getLogger(GcalWorkspace.class);
+
+    /**
+     * What to do with the directory of a job that succeeded
+     */
+    public enum Retention {
+
+        /**
+         * Leave it as it is, until it expires
+         */
+        KEEP,
+
+        /**
+         * Replace it with a zip file of the same name, with suffix {@code .zip}
+         */
+        COMPRESS,
+
+        /**
+         * Delete it
+         */
+        DELETE
+    }
+
+    public static final int DEFAULT_JOBS_PER_SHARD = 1000;
+
+    private static final DateTimeFormatter dayFormat = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String ZIPSUFFIX = ".zip";
+
+    private final Path root;
+    private final Retention retention;
+    private volatile int jobsPerShard = DEFAULT_JOBS_PER_SHARD;
+    private volatile long expiryMillis = 0L;
+
+    private final AtomicLong seq = new AtomicLong();
+    private final AtomicLong reclaimed = new AtomicLong();
+    // Directories of jobs that have not been closed yet
+    private final Set<Path> openJobs = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService cleaner;
+
+    /**
+     * @param root directory under which job directories are made. It is created if necessary.
+     * @param retention what to do with the directories of jobs that succeed
+     * @param sweepInterval how often to look for expired jobs and empty directories
+     * @param unit unit of {@code sweepInterval}
+     * @throws IOException if {@code root} cannot be created
+     */
+    public GcalWorkspace(File root, Retention retention, long sweepInterval, TimeUnit unit)
+            throws IOException {
+
+        if ( sweepInterval <= 0L )
+            throw new IllegalArgumentException("Sweep interval must be positive, got " + sweepInterval);
+
+        this.root = Files.createDirectories(root.toPath());
+        this.retention = retention;
+        this.cleaner = Executors.newSingleThreadScheduledExecutor( r -> {
+            Thread t = new Thread(r, GcalWorkspace.class.getSimpleName() + " cleaner");
+            t.setDaemon(true);
+            return t;
+        } );
+        this.cleaner.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, unit);
+    }
+
+    /**
+     * @param jobsPerShard maximum number of jobs in one directory
+     */
+    public void setJobsPerShard(int jobsPerShard) {
+        if ( jobsPerShard < 1 )
+            throw new IllegalArgumentException("Need at least 1 job per shard, got " + jobsPerShard);
+        this.jobsPerShard = jobsPerShard;
+    }
+
+    /**
+     * @param expiry age after which the files of a closed job are deleted by the periodic
+     * sweep, whether or not it succeeded, or {@code 0} to keep them indefinitely
+     * @param unit unit of {@code expiry}
+     */
+    public void setExpiry(long expiry, TimeUnit unit) {
+        if ( expiry < 0L )
+            throw new IllegalArgumentException("Expiry must not be negative, got " + expiry);
+        this.expiryMillis = unit.toMillis(expiry);
+    }
+
+    /**
+     * Makes a directory for a new job.
+     *
+     * @param name name for the job, used as the start of the name of its directory.
+     * It should be a valid file name.
+     * @return the new job
+     * @throws IOException if the directory cannot be made
+     */
+    public Job newJob(String name) throws IOException {
+
+        while ( true ) {
+            Path day = this.root.resolve(LocalDate.now().format(dayFormat));
+            long n = this.seq.getAndIncrement();
+            Path shard = day.resolve(String.format("%04d", n / this.jobsPerShard));
+            Path dir = shard.resolve(String.format("%s-%06d", name, n));
+            // Registered first, so that the sweep never takes it for an old job
+            this.openJobs.add(dir);
+            try {
+                Files.createDirectories(shard);
+                return new Job(Files.createDirectory(dir));
+            }
+            catch (FileAlreadyExistsException e) {
+                // Left by an earlier instance: try the next number
+                this.openJobs.remove(dir);
+            }
+            catch (NoSuchFileException e) {
+                // Shard swept away as it was made, just after midnight: try again
+                this.openJobs.remove(dir);
+            }
+            catch (IOException | RuntimeException e) {
+                this.openJobs.remove(dir);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return number of bytes freed so far by compressing or deleting job directories
+     */
+    public long getReclaimedBytes() {
+        return this.reclaimed.get();
+    }
+
+    /**
+     * Stops background cleanup, after waiting for a short while for the retention
+     * policy to be applied to jobs that have already been closed.
+     */
+    @Override
+    public void close() {
+        this.cleaner.shutdown();
+        try {
+            if ( ! this.cleaner.awaitTermination(30L, TimeUnit.SECONDS) )
+                logger.warn("Gave up waiting for cleanup of {} to finish", this.root);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Applies the retention policy to the directory of a successful job
+    private void retain(Path dir) {
+        try {
+            switch ( this.retention ) {
+            case KEEP:
+                break;
+            case COMPRESS:
+                long before = GcalWorkspace.size(dir);
+                Path zip = dir.resolveSibling(dir.getFileName() + ZIPSUFFIX);
+                GcalWorkspace.zip(dir, zip);
+                GcalWorkspace.delete(dir);
+                this.reclaimed.addAndGet(Math.max(0L, before - Files.size(zip)));
+                break;
+            case DELETE:
+                this.reclaimed.addAndGet(GcalWorkspace.size(dir));
+                GcalWorkspace.delete(dir);
+                break;
+            }
+        }
+        catch (IOException e) {
+            logger.warn("Could not apply retention policy {} to {}: {}", this.retention, dir, e.toString());
+        }
+    }
+
+    // Deletes expired jobs and empty directories. Runs on the cleaner thread.
+    private void sweep() {
+
+        long cutoff = this.expiryMillis > 0L ? System.currentTimeMillis() - this.expiryMillis : 0L;
+        String today = LocalDate.now().format(dayFormat);
+
+        try {
+            for ( Path day: GcalWorkspace.list(this.root) ) {
+                // Today's directories are not removed: jobs may be about to be made in them
+                boolean isToday = day.getFileName().toString().equals(today);
+                for ( Path shard: GcalWorkspace.list(day) ) {
+                    if ( cutoff > 0L ) {
+                        for ( Path job: GcalWorkspace.list(shard) ) {
+                            if ( ! this.openJobs.contains(job) && GcalWorkspace.lastModified(job) < cutoff ) {
+                                this.reclaimed.addAndGet(GcalWorkspace.size(job));
+                                GcalWorkspace.delete(job);
+                            }
+                        }
+                    }
+                    if ( ! isToday )
+                        GcalWorkspace.deleteIfEmpty(shard);
+                }
+                if ( ! isToday )
+                    GcalWorkspace.deleteIfEmpty(day);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            // Carry on next time: a failure here must not stop later sweeps
+            logger.warn("Sweep of {} failed: {}", this.root, e.toString());
+        }
+    }
+
+    private static List<Path> list(Path dir) throws IOException {
+        if ( ! Files.isDirectory(dir) )
+            return Collections.emptyList();
+        try ( Stream<Path> paths = Files.list(dir) ) {
+            return paths.collect(Collectors.toList());
+        }
+    }
+
+    private static void deleteIfEmpty(Path dir) {
+        try ( DirectoryStream<Path> entries = Files.newDirectoryStream(dir) ) {
+            if ( entries.iterator().hasNext() )
+                return;
+        }
+        catch (IOException e) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(dir);
+        }
+        catch (IOException e) {
+            // Probably no longer empty
+        }
+    }
+
+    // Newest modification time of anything in the tree, as a job's directory
+    // is not touched when the files in it are rewritten
+    private static long lastModified(Path path) throws IOException {
+        try ( Stream<Path> paths = Files.walk(path) ) {
+            long retval = 0L;
+            for ( Path p: (Iterable<Path>) paths::iterator )
+                retval = Math.max(retval, Files.getLastModifiedTime(p).toMillis());
+            return retval;
+        }
+    }
+
+    private static long size(Path path) throws IOException {
+        try ( Stream<Path> paths = Files.walk(path) ) {
+            return paths.filter(Files::isRegularFile).mapToLong( p -> p.toFile().length() ).sum();
+        }
+    }
+
+    private static void zip(Path dir, Path zip) throws IOException {
+
+        Path tmp = zip.resolveSibling(zip.getFileName() + ".tmp");
+        try ( ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(tmp));
+                Stream<Path> paths = Files.walk(dir) ) {
+            for ( Path p: (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator ) {
+                out.putNextEntry(new ZipEntry(dir.relativize(p).toString().replace(File.separatorChar, '/')));
+                Files.copy(p, (OutputStream) out);
+                out.closeEntry();
+            }
+        }
+        catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, zip, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void delete(Path path) throws IOException {
+        try ( Stream<Path> paths = Files.walk(path) ) {
+            for ( Path p: (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator )
+                Files.deleteIfExists(p);
+        }
+    }
+
+    /**
+     * Directory for one job. The job is taken to have failed unless
+     * {@link #succeeded()} is called before it is closed.
+     */
+    public final class Job implements AutoCloseable {
+
+        private final Path dir;
+        private boolean success = false, closed = false;
+
+        private Job(Path dir) {
+            this.dir = dir;
+        }
+
+        /**
+         * @return working directory for the job
+         */
+        public File getDir() {
+            return this.dir.toFile();
+        }
+
+        /**
+         * Marks the job as having succeeded, so that the retention policy is
+         * applied to its directory when it is closed.
+         */
+        public synchronized void succeeded() {
+            this.success = true;
+        }
+
+        /**
+         * Finishes with the job directory. Nothing should be done in it after this.
+         */
+        @Override
+        public synchronized void close() {
+            if ( this.closed )
+                return;
+            this.closed = true;
+            GcalWorkspace.this.openJobs.remove(this.dir);
+
+            if ( ! this.success ) {
+                logger.info("Keeping directory of failed job {}", this.dir);
+                return;
+            }
+            if ( GcalWorkspace.this.retention == Retention.KEEP )
+                return;
+            try {
+                GcalWorkspace.this.cleaner.execute( () -> GcalWorkspace.this.retain(this.dir) );
+            }
+            catch (RejectedExecutionException e) {
+                // Workspace already closed
+                GcalWorkspace.this.retain(this.dir);
+            }
+        }
+    }
+
+}
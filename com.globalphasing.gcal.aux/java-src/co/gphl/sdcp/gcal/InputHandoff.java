@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.gcal;
+
+/**
+ * How namelist input held in memory is handed to a Gcal-family application.
+ *
+ * @see GcalLauncher#launch(java.io.File, co.gphl.common.namelist.NamelistData, InputHandoff, boolean)
+ */
+public enum InputHandoff {
+
+    /**
+     * Write the input to a file in the working directory, and run the application
+     * there, as for {@link GcalLauncher#launch(java.io.File, java.io.File)}
+     */
+    FILE,
+
+    /**
+     * Write the input to a file in a {@link GcalLauncher#setScratchDir(java.io.File) scratch
+     * directory}, normally on tmpfs, and run the application there
+     */
+    TMPFS,
+
+    /**
+     * As for {@link #TMPFS}, but pass the input through a named pipe, so that it is never
+     * stored. The application must read its input once, from beginning to end. Where named
+     * pipes cannot be made, {@link #TMPFS} is used instead.
+     */
+    PIPE
+
+}
@@ -0,0 +1,381 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.gcal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content-addressed cache of the results of Gcal-family application launches, kept
+ * on disk so that it can be shared between launchers and survive restarts.
+ *
+ * <p>The key for a launch is a SHA-256 hash of the application path, the command-line
+ * options and environment variables set by the launcher, and the contents of the input
+ * file. Only the contents of the input file are hashed: if it refers to other files
+ * whose contents can change, a cache should not be used. Thread counts are not
+ * part of the key, on the assumption that they do not affect the results.</p>
+ *
+ * <p>Only launches that terminated normally are stored. The cache holds at most
+ * a given number of entries, discarding the least recently used when it is full,
+ * and entries older than a given age are discarded instead of being used.</p>
+ *
+ * @see GcalLauncher#setLaunchCache(LaunchCache)
+ */
+public class LaunchCache {
+
+    private static Logger logger = LoggerFactory.getLogger(LaunchCache.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final String META = "meta.properties";
+    private static final String STDOUT = "stdout.txt";
+    private static final String OUTPUT = "output";
+    private static final String LASTLINE = "lastErrLine";
+    private static final String CREATED = "created";
+    private static final String TMPPREFIX = ".tmp-";
+
+    private final Path dir;
+    private final int maxEntries;
+    private final long maxAgeMillis;
+
+    // Key -> time stored, in least-recently-used order
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits = 0L, misses = 0L;
+
+    /**
+     * Opens a cache in {@code dir}, creating the directory if necessary. Entries
+     * left there by earlier instances are used.
+     *
+     * @param dir directory to hold cache entries. It should not be used for anything else.
+     * @param maxEntries maximum number of entries to keep
+     * @param maxAge age after which an entry is discarded, or {@code 0} for no limit
+     * @param unit unit of {@code maxAge}
+     * @throws IOException if the directory cannot be created or read
+     */
+    public LaunchCache(File dir, int maxEntries, long maxAge, TimeUnit unit) throws IOException {
+
+        if ( maxEntries < 1 || maxAge < 0L )
+            throw new IllegalArgumentException(String.format(
+                    "Need maxEntries >= 1 and maxAge >= 0, got %d and %d", maxEntries, maxAge));
+
+        this.dir = Files.createDirectories(dir.toPath());
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = unit.toMillis(maxAge);
+
+        // Rebuild the index, least recently used first
+        List<Path> entries = new ArrayList<>();
+        try ( DirectoryStream<Path> stream = Files.newDirectoryStream(this.dir) ) {
+            for ( Path p: stream ) {
+                if ( p.getFileName().toString().startsWith(TMPPREFIX) )
+                    LaunchCache.delete(p);
+                else if ( Files.isRegularFile(p.resolve(META)) )
+                    entries.add(p);
+            }
+        }
+        entries.sort(Comparator.comparing(LaunchCache::lastUsed));
+        for ( Path p: entries ) {
+            try {
+                this.index.put(p.getFileName().toString(),
+                        Long.valueOf(LaunchCache.readMeta(p).getProperty(CREATED)));
+            }
+            catch (IOException | RuntimeException e) {
+                logger.warn("Discarding unreadable cache entry {}: {}", p, e.toString());
+                LaunchCache.delete(p);
+            }
+        }
+        this.evict();
+    }
+
+    /**
+     * Computes the key for a launch.
+     *
+     * @param app path of the application
+     * @param input input file
+     * @param args command-line options, as held by the launcher
+     * @param env environment variables, as held by the launcher
+     * @return key
+     * @throws IOException if the input file cannot be read
+     */
+    public String key(Path app, File input, Map<String, String> args, Map<String, String> env)
+            throws IOException {
+
+        MessageDigest digest = LaunchCache.newDigest(app, args, env);
+        byte[] buf = new byte[8192];
+        int n;
+        try ( InputStream is = Files.newInputStream(input.toPath()) ) {
+            while ( ( n = is.read(buf) ) > 0 )
+                digest.update(buf, 0, n);
+        }
+        return LaunchCache.hex(digest);
+    }
+
+    /**
+     * Computes the key for a launch whose input is held in memory. The key is the
+     * same as that for a launch with a file containing the same input.
+     *
+     * @param app path of the application
+     * @param input contents of the input
+     * @param args command-line options, as held by the launcher
+     * @param env environment variables, as held by the launcher
+     * @return key
+     */
+    public String key(Path app, byte[] input, Map<String, String> args, Map<String, String> env) {
+        MessageDigest digest = LaunchCache.newDigest(app, args, env);
+        digest.update(input);
+        return LaunchCache.hex(digest);
+    }
+
+    // Digest of everything but the input
+    private static MessageDigest newDigest(Path app, Map<String, String> args, Map<String, String> env) {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("BUG: SHA-256 is required to be supported", e);
+        }
+
+        LaunchCache.update(digest, app.toString());
+        for ( Map<String, String> m: Arrays.asList(args, env) ) {
+            Map<String, String> sorted = new TreeMap<>(m);
+            LaunchCache.update(digest, Integer.toString(sorted.size()));
+            for ( Map.Entry<String, String> e: sorted.entrySet() ) {
+                LaunchCache.update(digest, e.getKey());
+                LaunchCache.update(digest, e.getValue() == null ? "" : e.getValue());
+            }
+        }
+        return digest;
+    }
+
+    private static String hex(MessageDigest digest) {
+        StringBuilder sb = new StringBuilder(64);
+        for ( byte b: digest.digest() )
+            sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    // Length-prefixed, so that no two different sequences of strings hash the same
+    private static void update(MessageDigest digest, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    /**
+     * Looks up a launch, and if it is found copies its output file to where the
+     * application would have written it. The lock is held while the entry is read,
+     * so that it cannot be evicted part way through.
+     *
+     * @param key key from {@link #key(Path, File, Map, Map)}
+     * @param output where to copy the stored output file, or {@code null} if it is not wanted
+     * @return the stored result, or {@code null} if there is none or it could not be
+     * read or copied
+     */
+    synchronized Entry restore(String key, Path output) {
+
+        Long created = this.index.get(key);
+        if ( created != null && this.isExpired(created) ) {
+            this.index.remove(key);
+            LaunchCache.delete(this.dir.resolve(key));
+            created = null;
+        }
+        if ( created == null ) {
+            this.misses++;
+            return null;
+        }
+
+        Path entryDir = this.dir.resolve(key);
+        try {
+            Properties meta = LaunchCache.readMeta(entryDir);
+            String stdout = new String(Files.readAllBytes(entryDir.resolve(STDOUT)), StandardCharsets.UTF_8);
+            Path stored = entryDir.resolve(OUTPUT);
+            if ( output != null && Files.exists(stored) )
+                Files.copy(stored, output, StandardCopyOption.REPLACE_EXISTING);
+            // Record use, so that LRU order survives a restart
+            Files.setLastModifiedTime(entryDir.resolve(META), FileTime.fromMillis(System.currentTimeMillis()));
+            this.hits++;
+            return new Entry(meta.getProperty(LASTLINE), stdout);
+        }
+        catch (IOException e) {
+            // Damaged, or removed behind our back: launch as if it were not there
+            logger.debug("Could not restore cache entry {}: {}", key, e.toString());
+            this.misses++;
+            return null;
+        }
+    }
+
+    /**
+     * Stores the result of a launch.
+     *
+     * @param key key from {@link #key(Path, File, Map, Map)}
+     * @param lastErrLine last line of output
+     * @param stdout standard output
+     * @param output output file, or {@code null} if there is none
+     * @throws IOException
+     */
+    void put(String key, String lastErrLine, String stdout, File output) throws IOException {
+
+        Path tmp = Files.createTempDirectory(this.dir, TMPPREFIX);
+        try {
+            Files.write(tmp.resolve(STDOUT), stdout.getBytes(StandardCharsets.UTF_8));
+            if ( output != null )
+                Files.copy(output.toPath(), tmp.resolve(OUTPUT));
+
+            long created = System.currentTimeMillis();
+            Properties meta = new Properties();
+            if ( lastErrLine != null )
+                meta.setProperty(LASTLINE, lastErrLine);
+            meta.setProperty(CREATED, Long.toString(created));
+            try ( Writer w = Files.newBufferedWriter(tmp.resolve(META), StandardCharsets.UTF_8) ) {
+                meta.store(w, null);
+            }
+
+            // Publish the entry in one step, so that it is never seen half-written
+            try {
+                Files.move(tmp, this.dir.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (FileAlreadyExistsException e) {
+                // Stored concurrently by someone else
+                return;
+            }
+            catch (IOException e) {
+                // On some platforms, moving onto an existing directory fails differently
+                if ( Files.isDirectory(this.dir.resolve(key)) )
+                    return;
+                throw e;
+            }
+
+            synchronized (this) {
+                this.index.put(key, created);
+                this.evict();
+            }
+        }
+        finally {
+            LaunchCache.delete(tmp);
+        }
+    }
+
+    /**
+     * Discards all entries.
+     */
+    public synchronized void clear() {
+        for ( String key: this.index.keySet() )
+            LaunchCache.delete(this.dir.resolve(key));
+        this.index.clear();
+    }
+
+    public synchronized int size() {
+        return this.index.size();
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    // Call with lock held
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = this.index.entrySet().iterator();
+        while ( it.hasNext() ) {
+            Map.Entry<String, Long> e = it.next();
+            if ( this.index.size() > this.maxEntries || this.isExpired(e.getValue()) ) {
+                it.remove();
+                LaunchCache.delete(this.dir.resolve(e.getKey()));
+            }
+        }
+    }
+
+    private boolean isExpired(long created) {
+        return this.maxAgeMillis > 0L && System.currentTimeMillis() - created > this.maxAgeMillis;
+    }
+
+    private static Properties readMeta(Path entryDir) throws IOException {
+        Properties meta = new Properties();
+        try ( Reader r = Files.newBufferedReader(entryDir.resolve(META), StandardCharsets.UTF_8) ) {
+            meta.load(r);
+        }
+        return meta;
+    }
+
+    private static FileTime lastUsed(Path entryDir) {
+        try {
+            return Files.getLastModifiedTime(entryDir.resolve(META));
+        }
+        catch (IOException e) {
+            return FileTime.fromMillis(0L);
+        }
+    }
+
+    private static void delete(Path path) {
+        if ( ! Files.exists(path) )
+            return;
+        try ( Stream<Path> paths = Files.walk(path) ) {
+            paths.sorted(Comparator.reverseOrder()).forEach( p -> {
+                try {
+                    Files.deleteIfExists(p);
+                }
+                catch (IOException e) {
+                    logger.debug("Could not delete {}: {}", p, e.toString());
+                }
+            } );
+        }
+        catch (IOException e) {
+            logger.debug("Could not delete {}: {}", path, e.toString());
+        }
+    }
+
+    /**
+     * Stored result of a launch.
+     */
+    static final class Entry {
+
+        final String lastErrLine, stdout;
+
+        private Entry(String lastErrLine, String stdout) {
+            this.lastErrLine = lastErrLine;
+            this.stdout = stdout;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.gcal;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Everything that a {@link GcalLauncher} derives from its properties for a launch,
+ * worked out once and reused until the properties change. Instances are immutable.
+ *
+ * <p>A plan records the launcher's property version when it was made, which the
+ * launcher bumps whenever it is told that its properties have changed. The number of
+ * properties is also recorded, as a check that costs nothing: if that has changed,
+ * so have the properties, but the same number proves nothing either way.</p>
+ */
+final class LaunchPlan {
+
+    private final long version;
+    private final int propsSize;
+
+    final String appPath;
+    final boolean dryrun;
+    final double timeout;
+    final Map<String, String> args, env;
+
+    /**
+     * @param version property version of the launcher when the plan was made
+     * @param propsSize size of the properties that the plan was derived from
+     * @param appPath path of the application, or {@code null} in dry-run mode
+     * @param dryrun
+     * @param timeout time limit in seconds, or {@code 0}
+     * @param args command-line options
+     * @param env environment variables
+     */
+    LaunchPlan(long version, int propsSize, String appPath, boolean dryrun,
+            double timeout, Map<String, String> args, Map<String, String> env) {
+        this.version = version;
+        this.propsSize = propsSize;
+        this.appPath = appPath;
+        this.dryrun = dryrun;
+        this.timeout = timeout;
+        this.args = Collections.unmodifiableMap(new LinkedHashMap<>(args));
+        this.env = Collections.unmodifiableMap(new LinkedHashMap<>(env));
+    }
+
+    /**
+     * @param version current property version of the launcher
+     * @param properties
+     * @return {@code true} unless the properties are known to have changed since
+     * this plan was made
+     */
+    boolean isCurrent(long version, Properties properties) {
+        return this.version == version && this.propsSize == properties.size();
+    }
+
+    /**
+     * @param args
+     * @param env
+     * @return this plan, or a copy of it with different options and environment
+     * if those given differ
+     */
+    LaunchPlan withParams(Map<String, String> args, Map<String, String> env) {
+        if ( this.args.equals(args) && this.env.equals(env) )
+            return this;
+        return new LaunchPlan(this.version, this.propsSize, this.appPath,
+                this.dryrun, this.timeout, args, env);
+    }
+
+}
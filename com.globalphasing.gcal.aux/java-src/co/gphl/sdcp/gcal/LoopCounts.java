@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.gcal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import co.gphl.common.namelist.F90NamelistData;
+import co.gphl.common.namelist.F90NamelistGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.BeamstopSettingGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.CentredGoniostatSettingGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.DetectorSettingGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.GoniostatSettingGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.LoopCountGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.SimcalBeamSettingGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.SimcalCrystalGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.SimcalSweepGroup;
+
+/**
+ * Works out the variables of {@link LoopCountGroup} that simply count the groups of
+ * one type in a simcal input deck, so that they never have to be maintained as
+ * groups are added. Other loop count variables are left as they are.
+ */
+final class LoopCounts {
+
+    // Loop count variable for each type of group that is counted. All the group
+    // classes are final, so they can be looked up by exact class.
+    private static final Map<Class<? extends F90NamelistGroup>, Integer> index = new HashMap<>();
+    private static final String[] varNames;
+
+    static {
+        Map<Class<? extends F90NamelistGroup>, String> counted = new HashMap<>();
+        counted.put(SimcalCrystalGroup.class,           LoopCountGroup.nCrystals);
+        counted.put(SimcalSweepGroup.class,             LoopCountGroup.nSweeps);
+        counted.put(GoniostatSettingGroup.class,        LoopCountGroup.nGoniostatSettings);
+        counted.put(CentredGoniostatSettingGroup.class, LoopCountGroup.nCentredGoniostatSettings);
+        counted.put(DetectorSettingGroup.class,         LoopCountGroup.nDetectorSettings);
+        counted.put(SimcalBeamSettingGroup.class,       LoopCountGroup.nBeamSettings);
+        counted.put(BeamstopSettingGroup.class,         LoopCountGroup.nBeamstopSettings);
+
+        varNames = new String[counted.size()];
+        int i = 0;
+        for ( Map.Entry<Class<? extends F90NamelistGroup>, String> e: counted.entrySet() ) {
+            index.put(e.getKey(), i);
+            varNames[i++] = e.getValue();
+        }
+    }
+
+    private final int[] counts = new int[varNames.length];
+
+    private LoopCounts(F90NamelistData deck) {
+        for ( int i = 0; i < deck.size(); i++ ) {
+            Integer n = index.get(deck.get(i).getClass());
+            if ( n != null )
+                this.counts[n]++;
+        }
+    }
+
+    /**
+     * @param varName name of a loop count variable
+     * @return {@code true} if the variable is worked out from the groups present
+     */
+    static boolean isCounted(String varName) {
+        for ( String v: varNames ) {
+            if ( v.equals(varName) )
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Counts the groups in {@code deck}, and returns {@code lcGroup} as it should be written.
+     * Counts of types of group that are absent from {@code deck} are left as they are in
+     * {@code lcGroup}, because they may describe groups that come from elsewhere.
+     *
+     * @param deck simcal input
+     * @param lcGroup loop count group of {@code deck}, which is not modified
+     * @return {@code lcGroup} if no counts need to be set, otherwise a copy with the counts set
+     */
+    static F90NamelistGroup apply(F90NamelistData deck, F90NamelistGroup lcGroup) {
+
+        LoopCounts loopCounts = new LoopCounts(deck);
+        F90NamelistGroup retval = lcGroup;
+        for ( int i = 0; i < varNames.length; i++ ) {
+            int count = loopCounts.counts[i];
+            if ( count == 0 )
+                continue;
+            if ( retval == lcGroup ) {
+                retval = new LoopCountGroup(lcGroup.getLineNo());
+                retval.putAll(lcGroup);
+            }
+            retval.put(varNames[i], count);
+        }
+        return retval;
+    }
+
+    /**
+     * @param deck simcal input
+     * @param varName name of a loop count variable
+     * @return number of groups in {@code deck} that {@code varName} counts, or
+     * {@code -1} if it is not worked out from the groups present
+     */
+    static int count(F90NamelistData deck, String varName) {
+        LoopCounts loopCounts = new LoopCounts(deck);
+        for ( int i = 0; i < varNames.length; i++ ) {
+            if ( varNames[i].equals(varName) )
+                return loopCounts.counts[i];
+        }
+        return -1;
+    }
+
+}
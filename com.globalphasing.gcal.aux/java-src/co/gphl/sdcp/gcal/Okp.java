@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.gcal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An (Omega, Kappa, Phi) goniostat setting, in degrees. Instances are immutable,
+ * and equal if their angles are equal, so they can be used as map keys.
+ */
+public final class Okp {
+
+    private final double omega, kappa, phi;
+
+    public Okp(double omega, double kappa, double phi) {
+        // Adding 0.0 turns -0.0 into 0.0, so that the two compare equal
+        this.omega = omega + 0.0;
+        this.kappa = kappa + 0.0;
+        this.phi = phi + 0.0;
+    }
+
+    /**
+     * @param okp list of (Omega, Kappa, Phi)
+     * @throws IllegalArgumentException unless {@code okp} has 3 elements
+     */
+    public Okp(List<Double> okp) {
+        this( Okp.checkSize(okp).get(0), okp.get(1), okp.get(2) );
+    }
+
+    private static List<Double> checkSize(List<Double> okp) {
+        if ( Objects.requireNonNull(okp).size() != 3 )
+            throw new IllegalArgumentException(
+                    "Must specify a list of 3 numbers for (omega, kappa, phi)");
+        return okp;
+    }
+
+    public double getOmega() {
+        return this.omega;
+    }
+
+    public double getKappa() {
+        return this.kappa;
+    }
+
+    public double getPhi() {
+        return this.phi;
+    }
+
+    /**
+     * @return (Omega, Kappa, Phi) as an unmodifiable list, in the form
+     * taken by {@link RecenLauncher#setOkp(List)}
+     */
+    public List<Double> toList() {
+        return Collections.unmodifiableList(Arrays.asList(this.omega, this.kappa, this.phi));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if ( this == obj )
+            return true;
+        if ( ! ( obj instanceof Okp ) )
+            return false;
+        Okp other = (Okp) obj;
+        return Double.compare(this.omega, other.omega) == 0 &&
+                Double.compare(this.kappa, other.kappa) == 0 &&
+                Double.compare(this.phi, other.phi) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(new double[]{ this.omega, this.kappa, this.phi });
+    }
+
+    @Override
+    public String toString() {
+        return "(" + this.omega + ", " + this.kappa + ", " + this.phi + ")";
+    }
+}
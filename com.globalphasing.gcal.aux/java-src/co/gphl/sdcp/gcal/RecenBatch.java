@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.gcal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs recen for many (Omega, Kappa, Phi) settings at once.
+ *
+ * <p>Each distinct setting is run with its own {@link RecenLauncher}, in its own
+ * subdirectory of a new {@code batch_*} directory in the base directory, so the
+ * output files of concurrent runs cannot collide, even with other batches using
+ * the same base directory. The runs are queued on a {@link GcalProcessPool}, which limits
+ * how many run at once. Settings that are requested more than once are only run once.</p>
+ *
+ * <p>A batch that creates its own pool must be closed when it is finished with,
+ * to stop the pool's dispatching thread:</p>
+ *
+ * <pre>
+ *  try ( RecenBatch batch = new RecenBatch(
+ *          () -&gt; new RecenLauncher(namespace, props, appSpec, null, null, true, true),
+ *          baseDir, input, 4) ) {
+ *      Map&lt;Okp, List&lt;Double&gt;&gt; xyz = batch.run(okps);
+ *  }
+ * </pre>
+ */
+public class RecenBatch implements AutoCloseable {
+
+    private static Logger logger = LoggerFactory.getLogger(RecenBatch.class);
+
+    private final Supplier<? extends RecenLauncher> launcherFactory;
+    private final File baseDir, input;
+    private final GcalProcessPool pool;
+    private final boolean ownPool;
+    private volatile GcalWorkspace workspace = null;
+
+    /**
+     * @param launcherFactory creates a new, fully set up launcher for each run
+     * @param baseDir directory in which to create the working directories
+     * @param input recen input file, shared by all runs
+     * @param maxConcurrent maximum number of recen processes to run at once. A pool
+     * is created for this batch, and shut down when it is {@link #close() closed}.
+     */
+    public RecenBatch(Supplier<? extends RecenLauncher> launcherFactory, File baseDir, File input,
+            int maxConcurrent) {
+        this(launcherFactory, baseDir, input, new GcalProcessPool(maxConcurrent), true);
+    }
+
+    /**
+     * @param launcherFactory creates a new, fully set up launcher for each run
+     * @param baseDir directory in which to create the working directories
+     * @param input recen input file, shared by all runs
+     * @param pool pool to run recen on, which may be shared with other work. It
+     * is not shut down when this batch is closed.
+     */
+    public RecenBatch(Supplier<? extends RecenLauncher> launcherFactory, File baseDir, File input,
+            GcalProcessPool pool) {
+        this(launcherFactory, baseDir, input, pool, false);
+    }
+
+    private RecenBatch(Supplier<? extends RecenLauncher> launcherFactory, File baseDir, File input,
+            GcalProcessPool pool, boolean ownPool) {
+        this.launcherFactory = Objects.requireNonNull(launcherFactory);
+        this.baseDir = Objects.requireNonNull(baseDir);
+        this.input = input.getAbsoluteFile();
+        this.pool = Objects.requireNonNull(pool);
+        this.ownPool = ownPool;
+    }
+
+    /**
+     * Runs recen for each distinct setting in {@code okps}, and waits for them all to finish.
+     *
+     * @param okps settings to run
+     * @return (X, Y, Z) for each distinct setting, in the order first requested. The
+     * value is {@code null} where recen did not report a single set of values or
+     * failed: failures are logged.
+     * @throws InterruptedException if interrupted while waiting. Runs that have
+     * not finished are cancelled, as they are if the runs cannot all be submitted.
+     */
+    public Map<Okp, List<Double>> run(Collection<Okp> okps) throws InterruptedException {
+
+        Set<Okp> distinct = new LinkedHashSet<>(okps);
+        if ( distinct.size() < okps.size() )
+            logger.info("{} duplicate (O,K,P) settings will not be run again", okps.size() - distinct.size());
+
+        File batchDir = null;
+
+        Map<Okp, CompletableFuture<GcalProcessPool.JobReport>> jobs = new LinkedHashMap<>();
+        Map<Okp, GcalWorkspace.Job> jobDirs = new LinkedHashMap<>();
+        Map<Okp, List<Double>> retval = new LinkedHashMap<>();
+        GcalWorkspace workspace = this.workspace;
+        boolean collected = false;
+        try {
+            int i = 0;
+            for ( Okp okp: distinct ) {
+                File wdir;
+                if ( workspace != null ) {
+                    try {
+                        GcalWorkspace.Job jobDir = workspace.newJob("okp");
+                        jobDirs.put(okp, jobDir);
+                        wdir = jobDir.getDir().getAbsoluteFile();
+                    }
+                    catch (IOException e) {
+                        throw new RuntimeException("Could not create working directory", e);
+                    }
+                }
+                else {
+                    if ( batchDir == null )
+                        batchDir = this.newBatchDir();
+                    wdir = new File(batchDir, String.format("okp_%04d", ++i)).getAbsoluteFile();
+                    if ( ! wdir.isDirectory() && ! wdir.mkdirs() )
+                        throw new RuntimeException("Could not create working directory " + wdir);
+                }
+                RecenLauncher launcher = this.launcherFactory.get();
+                launcher.setOkp(okp.toList());
+                jobs.put(okp, this.pool.submit(launcher, wdir, this.input));
+            }
+
+            for ( Map.Entry<Okp, CompletableFuture<GcalProcessPool.JobReport>> e: jobs.entrySet() ) {
+                GcalProcessPool.JobReport report = e.getValue().get();
+                List<Double> xyz = null;
+                if ( report.getFailure() != null )
+                    logger.warn("recen failed for (O,K,P) {} in {}: {}", e.getKey(), report.getWdir(),
+                            report.getFailure().toString());
+                else if ( report.getResult() != null || report.getLauncher().wasCacheHit() )
+                    // No result in dry-run mode
+                    xyz = ( (RecenLauncher) report.getLauncher() ).getXyz();
+                retval.put(e.getKey(), xyz);
+                GcalWorkspace.Job jobDir = jobDirs.get(e.getKey());
+                if ( jobDir != null ) {
+                    if ( report.getFailure() == null )
+                        jobDir.succeeded();
+                    jobDir.close();
+                }
+            }
+            collected = true;
+        }
+        catch (ExecutionException e) {
+            // Pool futures always complete normally
+            throw new RuntimeException("BUG: unexpected failure of pool job", e.getCause());
+        }
+        finally {
+            // Interrupted, or failed to submit them all: don't leave runs going
+            if ( ! collected )
+                jobs.values().forEach( f -> f.cancel(true) );
+            // Anything not closed above is kept, as for a failure
+            jobDirs.values().forEach(GcalWorkspace.Job::close);
+        }
+
+        return retval;
+    }
+
+    // A fresh directory for each call of run(), whose name cannot be taken by
+    // another batch or process using the same base directory
+    private File newBatchDir() {
+        try {
+            Files.createDirectories(this.baseDir.toPath());
+            return Files.createTempDirectory(this.baseDir.toPath(), "batch_").toFile();
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Could not create working directory in " + this.baseDir, e);
+        }
+    }
+
+    /**
+     * Convenience method for settings given as lists.
+     *
+     * @param okps settings to run, each a list of (Omega, Kappa, Phi)
+     * @return as for {@link #run(Collection)}
+     * @throws InterruptedException
+     * @see #run(Collection)
+     */
+    public Map<Okp, List<Double>> runLists(Collection<? extends List<Double>> okps) throws InterruptedException {
+        List<Okp> list = new ArrayList<>(okps.size());
+        for ( List<Double> okp: okps )
+            list.add(new Okp(okp));
+        return this.run(list);
+    }
+
+    /**
+     * Makes each run use a job directory from {@code workspace}, instead of a
+     * subdirectory of the base directory, so that the retention policy of the
+     * workspace is applied to it once its result has been collected.
+     *
+     * @param workspace workspace, or {@code null} to use the base directory
+     */
+    public void setWorkspace(GcalWorkspace workspace) {
+        this.workspace = workspace;
+    }
+
+    public GcalProcessPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * Shuts down the pool if it was created for this batch. Runs already
+     * submitted carry on to completion.
+     */
+    @Override
+    public void close() {
+        if ( this.ownPool )
+            this.pool.shutdown();
+    }
+
+}
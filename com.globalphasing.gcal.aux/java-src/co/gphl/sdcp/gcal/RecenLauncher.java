@@ -7,10 +7,7 @@
  *******************************************************************************/
 package co.gphl.sdcp.gcal;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -19,6 +16,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,6 +24,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import co.gphl.common.properties.ApplicationSpec;
+import co.gphl.common.properties.PropertyValues;
 
 /**
  * FIXME! Make this reusable, so that we don't have to create
@@ -41,7 +40,8 @@ public class RecenLauncher extends GcalLauncher {
     
     public static final String appName = "recen";
     
-    private static Map<String, String> propNames = null;
+    // Built in full before being published, as launchers may be created concurrently
+    private static volatile Map<String, String> propNames = null;
     
     public static final String INITXYZ = "initxyz";
     public static final String INITOKP = "initokp";
@@ -49,12 +49,21 @@ public class RecenLauncher extends GcalLauncher {
     private boolean okpSet = false;
     private String strOkp = "";
     
+    // Arguments of --init-okp and --init-xyz given by setInitOkp/setInitXyz,
+    // which take precedence over the properties
+    private String initOkp = null, initXyz = null;
+    
+    // (X,Y,Z) values picked out of the output of the current/last launch
+    private volatile List<Double> xyz = null;
+    private volatile int nXyzFound = 0;
+    private Consumer<? super List<Double>> xyzListener = null;
+    
     // This regex for floats is inspired by the source for java.lang.Double in
     // OpenJDK
     // TODO: cater for exponents? CF says he is unlikely to output them though.
     private static final String floatRegex = "\\s*[+-]?((\\d+\\.?\\d*)|(\\.\\d+))";
-    private static final String XYZGROUP = "XYZ";
-    private static final String xyzRegex = "\\s*O,K,P =(" + floatRegex + "){3}\\s*"
+    private static final String XYZGROUP = "XYZ", OKPGROUP = "OKP";
+    private static final String xyzRegex = "\\s*O,K,P =(?<" + OKPGROUP + ">(" + floatRegex + "){3})\\s*"
             + "X,Y,Z =(?<" + XYZGROUP + ">"
                     + "(" + floatRegex +"){3}"  // Contents of capturing group XYZ
             + ")\\s*";
@@ -81,9 +90,10 @@ public class RecenLauncher extends GcalLauncher {
         if ( Objects.requireNonNull(okp).size() != 3 )
             throw new IllegalArgumentException(
                     "Must specify a list of 3 numbers for (omega, kappa, phi)");
-        this.strOkp = "";
+        StringBuilder strOkp = new StringBuilder(48);
         for ( Double s: okp )
-            this.strOkp += " " + Double.toString(s);
+            strOkp.append(' ').append(Double.toString(s));
+        this.strOkp = strOkp.toString();
         this.args.put("--okp", this.strOkp);
         this.okpSet = true;
     }
@@ -91,77 +101,146 @@ public class RecenLauncher extends GcalLauncher {
     /**
      * Set the argument to the {@code --init-okp} option to recen. Use this method
      * where the initial (Omega, Kappa, Phi) settings are not present in the
-     * properties used to instantiate this launcher.
+     * properties used to instantiate this launcher. The properties themselves
+     * are not changed.
      * 
      * @param okp
      */
     public void setInitOkp( List<Double> okp ) {
-        
-        String strOkp = "";
-        for ( Double s: okp )
-            strOkp += s.toString() + " ";
-        this.properties.setProperty(this.propNamePrefix + RecenLauncher.INITOKP, strOkp);
+        this.initOkp = PropertyValues.format(okp);
+        this.args.put("--init-okp", this.initOkp);
     }
     
     /**
      * Set the argument to the {@code --init-xyz} option to recen. Use this method
      * where the initial (X, Y, Z) settings are not present in the
-     * properties used to instantiate this launcher.
+     * properties used to instantiate this launcher. The properties themselves
+     * are not changed.
      *
      * @param xyz
      */
     public void setInitXyz( List<Double> xyz ) {
-        String strXyz = "";
-        for (Double s: xyz )
-            strXyz += s.toString() + " ";
-        this.properties.setProperty(this.propNamePrefix + RecenLauncher.INITXYZ, strXyz);
+        this.initXyz = PropertyValues.format(xyz);
+        this.args.put("--init-xyz", this.initXyz);
     }
     
+    /**
+     * Returns the (X, Y, Z) values reported by the last launch. The values are picked
+     * out of the output as it is produced, so the output does not need to have been
+     * captured to file.
+     * 
+     * @return (X, Y, Z), or {@code null} if recen reported no values, or more than one set
+     * @throws IllegalStateException if recen has not been launched
+     * @see #setXyzListener(Consumer)
+     */
     public List<Double> getXyz() {
         
         if ( this.lastErrLine == null )
             throw new IllegalStateException("(X,Y,Z) only available after launch(File, File) method has been called");
         
-        List<String> lines = new ArrayList<>();
-        Matcher lastXyzMatched = null;
-        try ( BufferedReader reader = new BufferedReader(new FileReader(this.getOutputFile()))  ) {
-            String line;
-            Matcher xyzMatcher;
-            while ( ( line = reader.readLine() ) != null ) {
-                xyzMatcher = xyzPattern.matcher(line);
-                if ( xyzMatcher.matches() ) {
-                    lines.add(line);
-                    lastXyzMatched = xyzMatcher;
-                }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        
         List<Double> retval = null;
+        int nFound = this.nXyzFound;
         
-        if ( lines.size() == 0 )
+        if ( nFound == 0 )
             logger.info("No (X,Y,Z) values found in recen output" );
-        else if ( lines.size() > 1 )
+        else if ( nFound > 1 )
             logger.info("{} lines containing (X,Y,Z) values found in recen output: returning null", 
-                    lines.size());
+                    nFound);
         else {
-            String xyzStr = lastXyzMatched.group(RecenLauncher.XYZGROUP);
-            retval = new ArrayList<>();
-            logger.info("Found (X,Y,Z) values {}", xyzStr);
-            for ( String s: xyzStr.trim().split("\\s+", 3) )
-                retval.add( Double.valueOf(s) );
+            retval = this.xyz;
+            logger.info("Found (X,Y,Z) values {}", retval);
         }
         
         return retval;
     }
     
+    /**
+     * Sets a listener to be given (X, Y, Z) values as soon as recen reports them, before
+     * the process has finished. It is called on the thread that copies the output, so
+     * it should not block.
+     * 
+     * @param xyzListener listener, or {@code null} for none
+     */
+    public void setXyzListener(Consumer<? super List<Double>> xyzListener) {
+        this.xyzListener = xyzListener;
+    }
+    
+    @Override
+    protected Consumer<String> _line_sink() {
+        
+        Consumer<? super List<Double>> listener = this.xyzListener;
+        return line -> {
+            List<Double> xyz = RecenLauncher.parseXyz(line);
+            if ( xyz == null )
+                return;
+            this.xyz = xyz;
+            this.nXyzFound++;
+            if ( listener != null )
+                listener.accept(xyz);
+        };
+    }
+    
+    /**
+     * Extracts the (X, Y, Z) values from a line of recen output of the form
+     * {@code O,K,P = o k p X,Y,Z = x y z}.
+     * 
+     * @param line line of output
+     * @return (X, Y, Z) values, or {@code null} if {@code line} is not of this form
+     */
+    static List<Double> parseXyz(String line) {
+        
+        Matcher xyzMatcher = xyzPattern.matcher(line);
+        if ( ! xyzMatcher.matches() )
+            return null;
+        
+        return new ArrayList<>(PropertyValues.asDoubles(xyzMatcher.group(RecenLauncher.XYZGROUP)));
+    }
+    
+    /**
+     * Extracts the (Omega, Kappa, Phi) values that recen echoes in a line of output
+     * of the form {@code O,K,P = o k p X,Y,Z = x y z}, as they were printed.
+     * 
+     * @param line line of output
+     * @return the three values, or {@code null} if {@code line} is not of this form
+     */
+    static List<String> parseEchoedOkp(String line) {
+        
+        Matcher xyzMatcher = xyzPattern.matcher(line);
+        if ( ! xyzMatcher.matches() )
+            return null;
+        
+        return PropertyValues.split(xyzMatcher.group(RecenLauncher.OKPGROUP));
+    }
+    
+    /**
+     * Sets up the command line for a {@link RecenSession}: as for a normal launch,
+     * but with no {@code --okp} option, and with {@link RecenSession#SESSION_OPTION}
+     * added. {@link #setOkp(List)} must be called again before this launcher is next
+     * used for a one-shot launch.
+     * 
+     * @param wdir working directory
+     * @param input input file
+     * @return process builder, or {@code null} in dry-run mode
+     */
+    ProcessBuilder newSessionProcessBuilder(File wdir, File input) {
+        
+        this.args.remove("--okp");
+        this.okpSet = false;
+        
+        ProcessBuilder processBuilder = this.newProcessBuilder(wdir, input);
+        if ( processBuilder != null )
+            processBuilder.command().add(RecenSession.SESSION_OPTION);
+        return processBuilder;
+    }
+    
     @Override
     protected void _pre_launch(File wdir, File input) {
         super._pre_launch(wdir, input);
         if ( ! this.okpSet )
             throw new IllegalStateException("Cannot launch " + RecenLauncher.appName +
                     ": have you called setOkp() ?");
+        this.xyz = null;
+        this.nXyzFound = 0;
     }
     
     @Override
@@ -169,14 +248,14 @@ public class RecenLauncher extends GcalLauncher {
         super._post_launch(wdir, input);
         
         if ( this.stdout != null ) {
-            this.strOkp = this.strOkp.replace(" ", "_");
-            String newFileName = this.stdout.getName().replaceFirst("\\.stdout$", this.strOkp + ".stdout");
+            String fileOkp = this.strOkp.replace(" ", "_");
+            String newFileName = this.stdout.getName().replaceFirst("\\.stdout$", fileOkp + ".stdout");
             File newFile = new File(wdir, newFileName);
             this.stdout.renameTo(newFile);
             this.stdout = newFile;
             
             if ( this.stderr != null ) {
-                newFileName = this.stderr.getName().replaceFirst("\\.stderr$", this.strOkp + ".stderr");
+                newFileName = this.stderr.getName().replaceFirst("\\.stderr$", fileOkp + ".stderr");
                 newFile = new File(wdir, newFileName);
                 this.stderr.renameTo(newFile);
                 this.stderr = newFile;
@@ -185,6 +264,16 @@ public class RecenLauncher extends GcalLauncher {
         
     }
 
+    @Override
+    protected void setupProperties() {
+        super.setupProperties();
+        // Values set through the API override those read from the properties
+        if ( this.initOkp != null )
+            this.args.put("--init-okp", this.initOkp);
+        if ( this.initXyz != null )
+            this.args.put("--init-xyz", this.initXyz);
+    }
+
     @Override
     public File getOutputFile() {
         return this.stdout;
@@ -194,9 +283,10 @@ public class RecenLauncher extends GcalLauncher {
     protected Map<String, String> getPropNames() {
         
         if ( RecenLauncher.propNames == null ) {
-            RecenLauncher.propNames = new HashMap<>(super.getPropNames());
-            RecenLauncher.propNames.put(INITXYZ, "--init-xyz");
-            RecenLauncher.propNames.put(INITOKP, "--init-okp");
+            Map<String, String> names = new HashMap<>(super.getPropNames());
+            names.put(INITXYZ, "--init-xyz");
+            names.put(INITOKP, "--init-okp");
+            RecenLauncher.propNames = names;
         }
         
         return Collections.unmodifiableMap(RecenLauncher.propNames);
@@ -0,0 +1,351 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.gcal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.gphl.common.threads.TerminationException;
+
+/**
+ * Keeps one recen process running to answer a series of (Omega, Kappa, Phi) requests,
+ * so that process startup and licence checks are only paid for once. When recen
+ * does not support this, each request is run as a one-shot launch with the
+ * {@link RecenLauncher} instead.
+ *
+ * <p>The protocol is line based:</p>
+ * <ol>
+ * <li>recen is started with the usual command line for the launcher, less the
+ * {@code --okp} option, plus {@value #SESSION_OPTION}.</li>
+ * <li>When it is ready to take requests, recen prints the line {@value #READY}.</li>
+ * <li>Each request is written to its standard input as one line, {@code o k p}.
+ * recen answers with a line of the usual form {@code O,K,P = o k p X,Y,Z = x y z},
+ * which may be preceded by other output. If it cannot answer, it prints a line
+ * starting with {@value #ERROR} instead.</li>
+ * <li>Answers whose echoed {@code O,K,P} values do not match the request, to the
+ * precision they are printed with, are skipped: recen may answer for the
+ * {@code --init-okp} setting when it starts, for instance.</li>
+ * <li>When its standard input is closed, recen exits.</li>
+ * </ol>
+ *
+ * <p>If recen exits, or does not print {@value #READY} within the
+ * {@link #setStartupTimeout(long, TimeUnit) startup timeout}, it is assumed not to
+ * support sessions. The binary is found from the launcher's {@link co.gphl.common.properties.ApplicationSpec},
+ * so a stub that speaks the protocol can be substituted for testing by setting the
+ * property for the recen binary. {@code example-src/co/gphl/recen-session-stub.sh}
+ * is such a stub.</p>
+ *
+ * <p>Instances are thread-safe, but requests are answered one at a time.</p>
+ */
+public class RecenSession implements AutoCloseable {
+
+    private static Logger logger = LoggerFactory.getLogger(RecenSession.class);
+
+    /**
+     * Command-line option that asks recen to run as a session
+     */
+    public static final String SESSION_OPTION = "--session";
+
+    /**
+     * Line printed by recen when it is ready for requests
+     */
+    public static final String READY = "SESSION READY";
+
+    /**
+     * Start of the line printed by recen when it cannot answer a request
+     */
+    public static final String ERROR = "SESSION ERROR";
+
+    private static final Charset charset = Charset.defaultCharset();
+
+    private final RecenLauncher launcher;
+    private final File wdir, input;
+    private final Writer transcript;
+
+    private long startupTimeoutNanos = TimeUnit.SECONDS.toNanos(30L);
+    private long responseTimeoutNanos = TimeUnit.MINUTES.toNanos(5L);
+
+    private Process process = null;
+    private Writer requests = null;
+    private final BlockingQueue<Response> responses = new LinkedBlockingQueue<>();
+    private boolean started = false, persistent = false;
+
+    /**
+     * @param launcher launcher used to set up the session, and for one-shot launches if
+     * sessions are not supported. It should not be used for anything else while the
+     * session is open.
+     * @param wdir working directory
+     * @param input input file
+     * @param transcript destination for recen's output. May be {@code null}
+     */
+    public RecenSession(RecenLauncher launcher, File wdir, File input, Writer transcript) {
+        this.launcher = Objects.requireNonNull(launcher);
+        this.wdir = wdir;
+        this.input = input;
+        this.transcript = transcript;
+    }
+
+    /**
+     * @param timeout how long to wait for recen to say that it is ready
+     * @param unit unit of {@code timeout}
+     */
+    public synchronized void setStartupTimeout(long timeout, TimeUnit unit) {
+        this.startupTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * @param timeout how long to wait for recen to answer a request before
+     * giving up on the session
+     * @param unit unit of {@code timeout}
+     */
+    public synchronized void setResponseTimeout(long timeout, TimeUnit unit) {
+        this.responseTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Starts recen, if that has not already been done, and waits until it is ready.
+     * Called by {@link #getXyz(List)} if needed.
+     *
+     * @return {@code true} if a persistent session is running, {@code false} if
+     * requests will be run as one-shot launches
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public synchronized boolean start() throws IOException, InterruptedException {
+
+        if ( this.started )
+            return this.persistent;
+        this.started = true;
+
+        ProcessBuilder processBuilder = this.launcher.newSessionProcessBuilder(this.wdir, this.input);
+        if ( processBuilder == null )
+            return false;
+        processBuilder.redirectErrorStream(true);
+
+        logger.info("Starting {} session: {}", RecenLauncher.appName, processBuilder.command());
+        this.process = processBuilder.start();
+        this.requests = new OutputStreamWriter(this.process.getOutputStream(), charset);
+
+        Process process = this.process;
+        Thread reader = new Thread(() -> this.readResponses(process), RecenSession.class.getSimpleName());
+        reader.setDaemon(true);
+        reader.start();
+
+        // Answers for the --init-okp setting may come before READY
+        long deadline = System.nanoTime() + this.startupTimeoutNanos;
+        Response response;
+        do
+            response = this.responses.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        while ( response != null && response.xyz != null );
+        if ( response != null && response.ready ) {
+            this.persistent = true;
+            logger.info("{} session ready", RecenLauncher.appName);
+        }
+        else {
+            logger.info("{} does not support sessions: falling back to one-shot launches",
+                    RecenLauncher.appName);
+            this.stop();
+        }
+        return this.persistent;
+    }
+
+    /**
+     * Gets the (X, Y, Z) values for an (Omega, Kappa, Phi) setting. If the session
+     * fails, it is abandoned and this and subsequent requests are run as one-shot launches.
+     *
+     * @param okp (Omega, Kappa, Phi)
+     * @return (X, Y, Z), or {@code null} if recen could not provide them
+     * @throws TerminationException if a one-shot launch fails
+     * @throws IOException
+     * @throws InterruptedException
+     * @see RecenLauncher#getXyz()
+     */
+    public synchronized List<Double> getXyz(List<Double> okp)
+            throws TerminationException, IOException, InterruptedException {
+
+        if ( Objects.requireNonNull(okp).size() != 3 )
+            throw new IllegalArgumentException(
+                    "Must specify a list of 3 numbers for (omega, kappa, phi)");
+
+        this.start();
+
+        if ( this.persistent ) {
+            Response response = null;
+            try {
+                this.requests.write(okp.get(0) + " " + okp.get(1) + " " + okp.get(2) + "\n");
+                this.requests.flush();
+                response = this.awaitResponse(okp);
+            }
+            catch (IOException e) {
+                logger.warn("Could not send request to {} session: {}", RecenLauncher.appName, e.toString());
+            }
+
+            if ( response != null && response.xyz != null ) {
+                logger.info("Found (X,Y,Z) values {} for (O,K,P) {}", response.xyz, okp);
+                return response.xyz;
+            }
+            if ( response != null && response.error != null ) {
+                logger.info("{} session could not handle (O,K,P) {}: {}", RecenLauncher.appName,
+                        okp, response.error);
+                return null;
+            }
+
+            logger.warn("{} session {}: falling back to one-shot launches", RecenLauncher.appName,
+                    response == null ? "did not answer" : "ended unexpectedly");
+            this.stop();
+        }
+
+        this.launcher.setOkp(okp);
+        this.launcher.launch(this.wdir, this.input);
+        return this.launcher.getXyz();
+    }
+
+    /**
+     * @return {@code true} if requests are being answered by a persistent recen process
+     */
+    public synchronized boolean isPersistent() {
+        return this.persistent;
+    }
+
+    /**
+     * Ends the session. recen is given a few seconds to exit after its input is closed
+     * before it is killed.
+     */
+    @Override
+    public synchronized void close() {
+        if ( this.process == null )
+            return;
+
+        try {
+            this.requests.close();
+        }
+        catch (IOException e) {
+            // Nothing more to say to it anyway
+        }
+
+        boolean interrupted = false;
+        try {
+            if ( ! this.process.waitFor(5L, TimeUnit.SECONDS) )
+                logger.warn("{} session did not exit when asked to: killing it", RecenLauncher.appName);
+        }
+        catch (InterruptedException e) {
+            interrupted = true;
+        }
+        this.stop();
+
+        if ( interrupted )
+            Thread.currentThread().interrupt();
+    }
+
+    // Kills the process, if there is one, and stops using it
+    private void stop() {
+        this.persistent = false;
+        if ( this.process != null ) {
+            this.process.destroyForcibly();
+            this.process = null;
+            this.requests = null;
+        }
+    }
+
+    // Waits for the answer to okp, skipping any answers for other settings.
+    // Returns null on timeout
+    private Response awaitResponse(List<Double> okp) throws InterruptedException {
+
+        long deadline = System.nanoTime() + this.responseTimeoutNanos;
+        Response response;
+        while ( ( response = this.responses.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) ) != null ) {
+            if ( response.ready )
+                continue;
+            if ( response.xyz != null && ! RecenSession.echoes(response.okp, okp) ) {
+                logger.debug("Skipping {} session answer for (O,K,P) {} while waiting for {}",
+                        RecenLauncher.appName, response.okp, okp);
+                continue;
+            }
+            break;
+        }
+        return response;
+    }
+
+    // Whether the values recen echoed match the request, to the number of
+    // decimal places printed
+    private static boolean echoes(List<String> echoed, List<Double> okp) {
+
+        if ( echoed == null || echoed.size() != okp.size() )
+            return false;
+
+        for ( int i = 0; i < okp.size(); i++ ) {
+            String value = echoed.get(i);
+            int point = value.indexOf('.');
+            int places = point < 0 ? 0 : value.length() - point - 1;
+            double tolerance = 0.5 * Math.pow(10.0, -places) * ( 1.0 + 1.0e-9 );
+            if ( Math.abs(Double.parseDouble(value) - okp.get(i)) > tolerance )
+                return false;
+        }
+        return true;
+    }
+
+    // Runs on the reader thread until recen's output ends
+    private void readResponses(Process process) {
+
+        try ( BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), charset)) ) {
+            String line;
+            List<Double> xyz;
+            while ( ( line = reader.readLine() ) != null ) {
+                if ( this.transcript != null ) {
+                    this.transcript.write(line);
+                    this.transcript.write(System.lineSeparator());
+                    this.transcript.flush();
+                }
+                if ( line.trim().equals(READY) )
+                    this.responses.add(new Response(true, null, null, null));
+                else if ( line.trim().startsWith(ERROR) )
+                    this.responses.add(new Response(false, null, null, line.trim().substring(ERROR.length()).trim()));
+                else if ( ( xyz = RecenLauncher.parseXyz(line) ) != null )
+                    this.responses.add(new Response(false, RecenLauncher.parseEchoedOkp(line), xyz, null));
+            }
+        }
+        catch (IOException e) {
+            logger.debug("Reading {} session output: {}", RecenLauncher.appName, e.toString());
+        }
+        finally {
+            // End of output: anyone waiting for a response will not get one
+            this.responses.add(new Response(false, null, null, null));
+        }
+    }
+
+    private static final class Response {
+
+        private final boolean ready;
+        private final List<String> okp;
+        private final List<Double> xyz;
+        private final String error;
+
+        private Response(boolean ready, List<String> okp, List<Double> xyz, String error) {
+            this.ready = ready;
+            this.okp = okp;
+            this.xyz = xyz;
+            this.error = error;
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.gcal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import co.gphl.common.namelist.F90NamelistData;
+import co.gphl.common.namelist.F90NamelistGroup;
+import co.gphl.common.namelist.F90NamelistGroupFactory;
+import co.gphl.common.namelist.impl.F90NamelistImpl;
+import co.gphl.sdcp.F90Namelist.v2.GcalAuxGroupFactory;
+
+/**
+ * Cache of parsed namelist files, such as simcal configuration and sample files,
+ * so that building many simcal inputs from the same files only parses each of them
+ * once. A file is parsed again if its modification time or length changes.
+ *
+ * <p>The decks returned are shared by everyone who uses the cache, so must not
+ * be modified: groups that need to be changed should be {@link #copy(F90NamelistGroup) copied}
+ * first. Instances are thread-safe.</p>
+ *
+ * @see AbstractSimcalInputData.Builder#deckCache(SimcalDeckCache)
+ */
+public class SimcalDeckCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    private final F90NamelistGroupFactory factory;
+    private final Map<String, CachedDeck> decks;
+    private long hits = 0L, misses = 0L;
+
+    /**
+     * Creates a cache for Gcal auxiliary namelist files, holding up to
+     * {@value #DEFAULT_MAX_ENTRIES} files.
+     */
+    public SimcalDeckCache() {
+        this(GcalAuxGroupFactory.factory(), DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param factory factory for the namelist groups in the files
+     * @param maxEntries maximum number of files to hold. The least recently used is
+     * discarded when the cache is full.
+     */
+    public SimcalDeckCache(F90NamelistGroupFactory factory, int maxEntries) {
+        if ( maxEntries < 1 )
+            throw new IllegalArgumentException("Need maxEntries >= 1, got " + maxEntries);
+        this.factory = Objects.requireNonNull(factory);
+        this.decks = new LinkedHashMap<String, CachedDeck>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedDeck> eldest) {
+                return this.size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the parsed contents of a namelist file, parsing it only if it is not
+     * already in the cache or has changed since it was parsed.
+     *
+     * @param file namelist file
+     * @return parsed contents, which must not be modified
+     * @throws IOException
+     */
+    public F90NamelistData get(File file) throws IOException {
+
+        File absFile = file.getAbsoluteFile();
+        String path = absFile.getPath();
+        long modified = absFile.lastModified(), length = absFile.length();
+
+        synchronized (this) {
+            CachedDeck entry = this.decks.get(path);
+            if ( entry != null && entry.modified == modified && entry.length == length ) {
+                this.hits++;
+                return entry.deck;
+            }
+            this.misses++;
+        }
+
+        // Parse without holding the lock. Two threads may occasionally parse the
+        // same file, but the results are the same.
+        F90NamelistData deck = new F90NamelistImpl(this.factory, absFile);
+        synchronized (this) {
+            this.decks.put(path, new CachedDeck(modified, length, deck));
+        }
+        return deck;
+    }
+
+    /**
+     * Makes a copy of a namelist group that can be modified without affecting
+     * the original, which may be shared.
+     *
+     * @param group group to copy
+     * @return copy, of the type given by the factory for the name of {@code group}
+     */
+    public F90NamelistGroup copy(F90NamelistGroup group) {
+        return SimcalDeckCache.copy(this.factory, group);
+    }
+
+    static F90NamelistGroup copy(F90NamelistGroupFactory factory, F90NamelistGroup group) {
+        F90NamelistGroup copy = factory.newInstance(group.getGroupName(), true, group.getLineNo());
+        copy.putAll(group);
+        return copy;
+    }
+
+    public synchronized void clear() {
+        this.decks.clear();
+    }
+
+    public synchronized int size() {
+        return this.decks.size();
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    private static final class CachedDeck {
+
+        private final long modified, length;
+        private final F90NamelistData deck;
+
+        private CachedDeck(long modified, long length, F90NamelistData deck) {
+            this.modified = modified;
+            this.length = length;
+            this.deck = deck;
+        }
+    }
+
+}
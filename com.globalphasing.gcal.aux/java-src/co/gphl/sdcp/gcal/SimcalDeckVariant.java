@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.gcal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import co.gphl.common.namelist.F90NamelistData;
+import co.gphl.common.namelist.F90NamelistGroup;
+import co.gphl.common.namelist.impl.F90NamelistImpl;
+import co.gphl.sdcp.F90Namelist.v2.GcalAuxGroupFactory;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.LoopCountGroup;
+
+/**
+ * Simcal input that differs from a template in only a few namelist groups. The
+ * variant starts out sharing all of its groups with the template: a group is
+ * copied the first time it is {@link #edit(int) edited}, so that neither the
+ * template nor other variants are affected. Groups that are added are the
+ * variant's own.
+ *
+ * <p>This makes it cheap to produce the input for many sweeps of the same sample:</p>
+ *
+ * <pre>
+ *    List&lt;SimcalDeckVariant&gt; decks = SimcalDeckVariant.variants(template, Arrays.asList(
+ *        deck -&gt; deck.edit(SimcalSweepGroup.class).put(...),
+ *        deck -&gt; deck.edit(SimcalSweepGroup.class).put(...) ));
+ * </pre>
+ *
+ * <p>The template must not be modified while variants of it are in use. Groups obtained
+ * other than through {@code edit} may be shared, so must not be modified.</p>
+ */
+public class SimcalDeckVariant extends F90NamelistImpl {
+
+    private static final long serialVersionUID = -2305907136842815164L;
+
+    // Groups that belong to this variant, rather than being shared with the template
+    private final Set<F90NamelistGroup> own =
+            Collections.newSetFromMap(new IdentityHashMap<F90NamelistGroup, Boolean>());
+
+    /**
+     * @param template deck to start from
+     */
+    public SimcalDeckVariant(F90NamelistData template) {
+        super(GcalAuxGroupFactory.factory(), "simcal");
+        List<F90NamelistGroup> groups = new ArrayList<>(template.size());
+        for ( int i = 0; i < template.size(); i++ )
+            groups.add(template.get(i));
+        // Bypass add(), which would claim ownership of the shared groups
+        super.addAll(groups);
+        if ( template instanceof F90NamelistImpl )
+            this.setCommaSeparator(((F90NamelistImpl) template).isCommaSeparated());
+    }
+
+    /**
+     * Makes a variant of {@code template} for each delta, by applying the delta to a
+     * new variant.
+     *
+     * @param template deck to start from
+     * @param deltas changes to make for each variant
+     * @return variants, in the same order as {@code deltas}
+     */
+    public static List<SimcalDeckVariant> variants(F90NamelistData template,
+            List<? extends Consumer<? super SimcalDeckVariant>> deltas) {
+        List<SimcalDeckVariant> retval = new ArrayList<>(deltas.size());
+        for ( Consumer<? super SimcalDeckVariant> delta: deltas ) {
+            SimcalDeckVariant variant = new SimcalDeckVariant(template);
+            delta.accept(variant);
+            retval.add(variant);
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the group at {@code index} for modification, copying it first if it
+     * is shared with the template.
+     *
+     * @param index position of the group
+     * @return group that belongs to this variant
+     */
+    public F90NamelistGroup edit(int index) {
+        F90NamelistGroup group = this.get(index);
+        if ( this.own.contains(group) )
+            return group;
+        F90NamelistGroup copy = SimcalDeckCache.copy(GcalAuxGroupFactory.factory(), group);
+        this.set(index, copy);
+        return copy;
+    }
+
+    /**
+     * Returns the first group of the given type for modification, copying it first
+     * if it is shared with the template.
+     *
+     * @param type type of group
+     * @return group that belongs to this variant
+     * @throws IllegalArgumentException if there is no group of that type
+     */
+    public <T extends F90NamelistGroup> T edit(Class<T> type) {
+        for ( int i = 0; i < this.size(); i++ ) {
+            if ( type.isInstance(this.get(i)) )
+                return type.cast(this.edit(i));
+        }
+        throw new IllegalArgumentException("Deck contains no " + type.getSimpleName());
+    }
+
+    /**
+     * @param index position of a group
+     * @return {@code true} if the group is shared with the template
+     */
+    public boolean isShared(int index) {
+        return ! this.own.contains(this.get(index));
+    }
+
+    /**
+     * Sets the loop counts that depend on the groups present, so that they are
+     * right even if groups have been added to this variant.
+     */
+    @Override
+    protected F90NamelistGroup prepareForWrite(F90NamelistGroup group) {
+        if ( group instanceof LoopCountGroup )
+            return LoopCounts.apply(this, group);
+        return group;
+    }
+
+    @Override
+    public boolean add(F90NamelistGroup e) {
+        this.own.add(e);
+        return super.add(e);
+    }
+
+    @Override
+    public void add(int index, F90NamelistGroup element) {
+        this.own.add(element);
+        super.add(index, element);
+    }
+
+    @Override
+    public F90NamelistGroup set(int index, F90NamelistGroup e) {
+        this.own.add(e);
+        if ( this.own.contains(this.get(index)) )
+            return super.set(index, e);
+        // Leave the shared group as it was
+        F90NamelistGroup prevVal = this.remove(index);
+        super.add(index, e);
+        return prevVal;
+    }
+
+}
@@ -18,7 +18,6 @@ import java.util.Properties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import co.gphl.common.properties.PropertyDefinition;
 import co.gphl.emulator.common.EmulatorApplicationSpec;
 
 /**
@@ -56,20 +55,23 @@ public class SimcalLauncher extends GcalLauncher {
     public static final int DEFSIMMODE = 1;
     public static final int DEFBCGMODE = -1;
 
-    private static Map<String, String> propNames = null;
+    // Built in full before being published, as launchers may be created concurrently
+    private static volatile Map<String, String> propNames = null;
     private File hkli;
     
     public SimcalLauncher(String propNameNamespace, Properties properties,
             Writer stdoutWriter, Writer stderrWriter, boolean outputToFile, boolean redirectErrorStream) {
         super(SimcalLauncher.logger, EmulatorApplicationSpec.SIMCAL, propNameNamespace, properties,
                 stdoutWriter, stderrWriter, outputToFile, redirectErrorStream);
-        // FIXME! SDCP-226 OK, sort of, to do this here because simcal is only used
-        // in an emulation context (c.f. hard-coded spec param), but we should really
-        // have a kind of save/set or push/pop arrangement so we can restore the
-        // previous static state. We should be doing this automatically in
-        // super._pre/post_launch
-        PropertyDefinition.State.setProperties(properties);
-        
+    }
+    
+    /**
+     * Resolves the application spec against the properties given to this
+     * launcher, which may differ from one launcher to another.
+     */
+    @Override
+    protected Properties getScopedProperties() {
+        return this.properties;
     }
     
     public void setHkli(File hkli) {
@@ -87,9 +89,10 @@ public class SimcalLauncher extends GcalLauncher {
     protected Map<String, String> getPropNames() {
         
         if ( SimcalLauncher.propNames == null ) {
-            SimcalLauncher.propNames = new HashMap<String, String>(super.getPropNames());
-            propNames.put(SimcalLauncher.MEMPOOL, "--memory-pool");
-            propNames.put(SimcalLauncher.HKLSCALE, "--hkl-scale");
+            Map<String, String> names = new HashMap<String, String>(super.getPropNames());
+            names.put(SimcalLauncher.MEMPOOL, "--memory-pool");
+            names.put(SimcalLauncher.HKLSCALE, "--hkl-scale");
+            SimcalLauncher.propNames = names;
         }
         
         return Collections.unmodifiableMap(SimcalLauncher.propNames);
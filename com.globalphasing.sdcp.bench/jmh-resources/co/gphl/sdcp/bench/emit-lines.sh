@@ -0,0 +1,50 @@
+#!/bin/bash
+#
+# Copyright (c) 2026 Global Phasing Ltd.
+#
+# This Source Code Form is subject to the terms of the Mozilla Public
+# License, v. 2.0. If a copy of the MPL was not distributed with this
+# file, You can obtain one at http://mozilla.org/MPL/2.0/.
+#
+# Writes lines to standard output at a steady rate, for benchmarking the
+# handling of process output. Each line starts with the time at which it was
+# written, in microseconds since the epoch, and its sequence number:
+#
+#    TTTTTTTTTTTTTTTT NNNNNNNN xxxx...
+#
+# Usage: emit-lines.sh N_LINES LINES_PER_SEC LINE_LENGTH
+#
+# LINES_PER_SEC 0 means as fast as possible. LINE_LENGTH includes the newline,
+# and must be at least 27. Needs bash 5 for EPOCHREALTIME.
+
+n=$1 rate=$2 len=$3
+
+if (( len < 27 )); then
+    echo "emit-lines.sh: LINE_LENGTH must be at least 27" >&2
+    exit 1
+fi
+pad=$(printf '%*s' $(( len - 27 )) '')
+pad=${pad// /x}
+
+# Write the lines in batches, one every 10ms, so that sleep is not run for
+# every line. Within a batch, lines go out as fast as printf can write them.
+if (( rate > 0 )); then
+    batch=$(( (rate + 99) / 100 ))
+else
+    batch=$n
+fi
+
+i=0
+next=${EPOCHREALTIME/[.,]/}
+while (( i < n )); do
+    for (( j = 0; j < batch && i < n; j++, i++ )); do
+        printf '%016d %08d %s\n' "${EPOCHREALTIME/[.,]/}" $i "$pad"
+    done
+    if (( rate > 0 && i < n )); then
+        (( next += 10000 ))
+        wait=$(( next - ${EPOCHREALTIME/[.,]/} ))
+        if (( wait > 0 )); then
+            sleep 0.$(printf '%06d' $wait)
+        fi
+    fi
+done
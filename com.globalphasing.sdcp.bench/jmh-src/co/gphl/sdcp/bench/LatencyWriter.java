@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.bench;
+
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Destination for lines written by {@code emit-lines.sh} or {@link SyntheticLineStream},
+ * that works out how long each line took to arrive from the time at its start. Lines
+ * that do not start with a time, such as headers, are ignored. Latencies are only
+ * recorded while {@link #setRecording(boolean) recording}.
+ *
+ * <p>Latencies go into a histogram of fixed size, with buckets that are 1&micro;s
+ * wide up to 64&micro;s and no more than 1/32 of their lower bound wide above that,
+ * so that recording allocates nothing that the {@code gc} profiler would count
+ * against the code being measured. Percentiles are given as the upper bound of
+ * their bucket.</p>
+ *
+ * <p>Only one thread may write at a time, and the results must only be read once
+ * writing has finished.</p>
+ */
+final class LatencyWriter extends Writer {
+
+    private static final int STAMP_DIGITS = 16;
+
+    // Histogram layout: latencies below LINEAR have a bucket each, and each power
+    // of 2 above that is split into HALF buckets
+    private static final int LINEAR = 64, HALF = LINEAR / 2;
+    private static final int N_BUCKETS = LINEAR + ( 63 - Long.numberOfTrailingZeros(LINEAR) ) * HALF;
+
+    // Epoch time with the resolution of System.nanoTime(), for comparing with times
+    // from other processes. Taking the offset just as the millisecond clock ticks
+    // makes it good to a few microseconds rather than to a millisecond.
+    private static final long epochMicros0, nanos0;
+
+    static {
+        long start = System.currentTimeMillis(), millis;
+        do {
+            millis = System.currentTimeMillis();
+        } while ( millis == start );
+        nanos0 = System.nanoTime();
+        epochMicros0 = 1000L * millis;
+    }
+
+    private final long[] counts = new long[N_BUCKETS];
+    private long size = 0L, max = 0L;
+    private boolean recording = false;
+
+    // State of the line being parsed
+    private boolean lineStart = true, inStamp = false, stamped = false;
+    private long stamp;
+    private int digits;
+
+    /**
+     * @return microseconds since the epoch
+     */
+    static long nowMicros() {
+        return epochMicros0 + ( System.nanoTime() - nanos0 ) / 1000L;
+    }
+
+    void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * Discards the latencies recorded so far.
+     */
+    void clear() {
+        Arrays.fill(this.counts, 0L);
+        this.size = 0L;
+        this.max = 0L;
+    }
+
+    /**
+     * @return number of latencies recorded
+     */
+    long size() {
+        return this.size;
+    }
+
+    /**
+     * @param fraction fraction of lines, from 0 to 1
+     * @return latency in microseconds that {@code fraction} of the lines arrived within
+     */
+    long percentile(double fraction) {
+        if ( this.size == 0L )
+            return 0L;
+        long rank = (long) Math.max(1.0, Math.ceil(fraction * this.size)), seen = 0L;
+        for ( int i = 0; i < N_BUCKETS; i++ ) {
+            seen += this.counts[i];
+            if ( seen >= rank )
+                return Math.min(LatencyWriter.upperBound(i), this.max);
+        }
+        return this.max;
+    }
+
+    /**
+     * @return p50, p90, p99 and maximum latency, in microseconds
+     */
+    String summary() {
+        if ( this.size == 0 )
+            return "no lines recorded";
+        return String.format("latency p50 %d us, p90 %d us, p99 %d us, max %d us over %d lines",
+                this.percentile(0.5), this.percentile(0.9), this.percentile(0.99),
+                this.percentile(1.0), this.size);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        // Everything in one write arrives at the same time
+        long now = -1L;
+        for ( int i = off; i < off + len; i++ )
+            now = this.accept(cbuf[i], now);
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        long now = -1L;
+        for ( int i = off; i < off + len; i++ )
+            now = this.accept(str.charAt(i), now);
+    }
+
+    @Override
+    public void write(int c) {
+        this.accept((char) c, -1L);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    // Parses one character. Returns the time at which the write arrived, once
+    // that has been needed, or now as given.
+    private long accept(char c, long now) {
+
+        if ( this.lineStart ) {
+            this.lineStart = false;
+            this.inStamp = true;
+            this.stamped = false;
+            this.stamp = 0L;
+            this.digits = 0;
+        }
+        if ( c == '\n' ) {
+            if ( this.stamped && this.recording ) {
+                if ( now < 0L )
+                    now = LatencyWriter.nowMicros();
+                this.record(now - this.stamp);
+            }
+            this.lineStart = true;
+        }
+        else if ( this.inStamp ) {
+            if ( c >= '0' && c <= '9' ) {
+                this.stamp = 10L * this.stamp + ( c - '0' );
+                this.digits++;
+            }
+            else {
+                this.inStamp = false;
+                this.stamped = c == ' ' && this.digits == STAMP_DIGITS;
+            }
+        }
+        return now;
+    }
+
+    private void record(long latency) {
+        // The clocks of two processes can disagree by a microsecond or so
+        long value = Math.max(latency, 0L);
+        this.counts[LatencyWriter.bucket(value)]++;
+        this.size++;
+        if ( value > this.max )
+            this.max = value;
+    }
+
+    private static int bucket(long value) {
+        if ( value < LINEAR )
+            return (int) value;
+        // Shift that leaves the top bits of value between HALF and LINEAR - 1
+        int shift = 63 - Long.numberOfLeadingZeros(value) - Long.numberOfTrailingZeros(HALF);
+        return LINEAR + ( shift - 1 ) * HALF + (int) ( value >>> shift ) - HALF;
+    }
+
+    // Largest value that goes in a bucket
+    private static long upperBound(int bucket) {
+        if ( bucket < LINEAR )
+            return bucket;
+        int shift = ( bucket - LINEAR ) / HALF + 1;
+        long top = ( bucket - LINEAR ) % HALF + HALF;
+        return ( ( top + 1L ) << shift ) - 1L;
+    }
+
+}
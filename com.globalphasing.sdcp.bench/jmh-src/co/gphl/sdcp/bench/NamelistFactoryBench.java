@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import co.gphl.common.namelist.F90NamelistData;
+import co.gphl.common.namelist.F90NamelistGroup;
+import co.gphl.common.namelist.F90NamelistGroupFactory;
+import co.gphl.common.namelist.VarnameComparator;
+import co.gphl.sdcp.F90Namelist.v2.GcalAuxGroupFactory;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.SimcalSweepGroup;
+
+/**
+ * Creating namelist groups by name, and ordering variable names with
+ * {@link VarnameComparator}, both of which happen for every group read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NamelistFactoryBench {
+
+    private F90NamelistGroupFactory factory;
+    private String[] groupNames;
+    private VarnameComparator comparator;
+    private List<String> varNames;
+
+    @Setup
+    public void setup() {
+
+        this.factory = GcalAuxGroupFactory.factory();
+
+        // Group names in the order they come in a deck, in the mixed case
+        // that hand-written files use
+        F90NamelistData deck = SimcalDecks.simcal(4);
+        this.groupNames = new String[deck.size()];
+        for ( int i = 0; i < deck.size(); i++ ) {
+            String name = deck.get(i).getGroupName();
+            this.groupNames[i] = i % 2 == 0 ? name : name.toLowerCase();
+        }
+
+        // Variables of a sweep group, shuffled, with a few the comparator does not
+        // know about, which it has to order alphabetically
+        F90NamelistGroup sweep = deck.get(deck.size() - 1);
+        this.comparator = ((SimcalSweepGroup) sweep).comparator();
+        this.varNames = new ArrayList<String>(sweep.keySet());
+        this.varNames.addAll(Arrays.asList("comment", "Extra_1", "EXTRA_2"));
+        Collections.shuffle(this.varNames, new Random(0));
+    }
+
+    @Benchmark
+    public void newInstance(Blackhole bh) {
+        for ( int i = 0; i < this.groupNames.length; i++ )
+            bh.consume(this.factory.newInstance(this.groupNames[i], true, i + 1));
+    }
+
+    @Benchmark
+    public List<String> sortVarNames() {
+        List<String> retval = new ArrayList<String>(this.varNames);
+        Collections.sort(retval, this.comparator);
+        return retval;
+    }
+
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.bench;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import co.gphl.common.namelist.F90NamelistData;
+import co.gphl.common.namelist.impl.F90NamelistImpl;
+import co.gphl.sdcp.F90Namelist.v2.GcalAuxGroupFactory;
+
+/**
+ * Reading and writing whole simcal input decks with {@link F90NamelistImpl}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NamelistFileBench {
+
+    /** Number of sweeps in the deck */
+    @Param({"1", "16", "256"})
+    public int nSweeps;
+
+    private String text;
+    private F90NamelistData deck;
+
+    @Setup
+    public void setup() throws IOException {
+        this.text = SimcalDecks.text(SimcalDecks.simcal(this.nSweeps));
+        this.deck = this.read();
+    }
+
+    @Benchmark
+    public F90NamelistData read() throws IOException {
+        return new F90NamelistImpl(GcalAuxGroupFactory.factory(), "simcal",
+                new StringReader(this.text));
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        StringWriter writer = new StringWriter(this.text.length());
+        this.deck.write(writer);
+        return writer.getBuffer().length();
+    }
+
+}
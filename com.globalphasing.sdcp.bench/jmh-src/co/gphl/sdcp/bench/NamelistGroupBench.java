@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import co.gphl.common.namelist.F90NamelistGroup;
+import co.gphl.sdcp.F90Namelist.v2.GcalAuxGroupFactory;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.SegmentGroup;
+
+/**
+ * Parsing and reading back long value lists in a single namelist group.
+ * Putting a value list is what exercises {@code splitValueList}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NamelistGroupBench {
+
+    private static final String numVar = SegmentGroup.segCoord;
+    private static final String boolVar = "SEG_MASK";
+
+    /** Number of values in each list */
+    @Param({"16", "1024", "16384"})
+    public int nValues;
+
+    private String numList, boolList;
+    private F90NamelistGroup group;
+
+    @Setup
+    public void setup() {
+        this.numList = SimcalDecks.numList(this.nValues);
+        this.boolList = SimcalDecks.boolList(this.nValues);
+        this.group = GcalAuxGroupFactory.factory().newInstance(SegmentGroup.groupName, true, 1);
+        this.group.put(numVar, this.numList);
+        this.group.put(boolVar, this.boolList);
+    }
+
+    @Benchmark
+    public String[] splitNumList() {
+        return this.group.put(numVar, this.numList);
+    }
+
+    @Benchmark
+    public String[] splitBoolList() {
+        return this.group.put(boolVar, this.boolList);
+    }
+
+    @Benchmark
+    public List<Double> getNumList() {
+        return this.group.getNumList(Double.class, numVar);
+    }
+
+    @Benchmark
+    public List<Boolean> getBooleanList() {
+        return this.group.getBooleanList(boolVar);
+    }
+
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.bench;
+
+import co.gphl.common.io.streams.StreamPrinter;
+
+/**
+ * Ways of running {@link StreamPrinter}, set through the system properties that
+ * it reads when it is created with a buffer size and delay of {@code 0}, as
+ * {@link co.gphl.common.threads.ProcessLauncher ProcessLauncher} creates it.
+ */
+public enum PrinterMode {
+
+    /** Line by line */
+    LINES(-1, 0, false),
+    /** Buffered, with the default delay */
+    BUFFERED(StreamPrinter.defaultBufSize, StreamPrinter.defaultDelay, false),
+    /** Buffered, with a short delay */
+    BUFFERED_10MS(StreamPrinter.defaultBufSize, 10, false),
+    /** Buffered, without a delay */
+    NO_DELAY(StreamPrinter.defaultBufSize, -1, false),
+    /** Buffered, with an adaptive flush policy */
+    ADAPTIVE(StreamPrinter.defaultBufSize, StreamPrinter.defaultDelay, true);
+
+    private final int cbufSize, delay;
+    private final boolean adaptive;
+
+    private PrinterMode(int cbufSize, int delay, boolean adaptive) {
+        this.cbufSize = cbufSize;
+        this.delay = delay;
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * Sets the system properties for this mode. JMH runs each set of benchmark
+     * parameters in a new JVM, so they need not be set back.
+     */
+    void apply() {
+        System.setProperty(StreamPrinter.BUFSIZEPROPERTY, Integer.toString(this.cbufSize));
+        System.setProperty(StreamPrinter.DELAYPROPERTY, Integer.toString(this.delay));
+        System.setProperty(StreamPrinter.ADAPTIVEPROPERTY, this.adaptive ? "T" : "F");
+    }
+
+}
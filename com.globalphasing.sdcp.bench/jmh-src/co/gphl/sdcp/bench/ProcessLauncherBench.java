@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+import co.gphl.common.threads.ProcessLauncher;
+import co.gphl.common.threads.ProcessResult;
+
+/**
+ * Running a child process that writes lines at a steady rate with {@link ProcessLauncher},
+ * with its output copied by {@link co.gphl.common.io.streams.StreamPrinter StreamPrinter}
+ * in each of its {@link PrinterMode modes}. The child is {@code emit-lines.sh}, which
+ * needs bash 5. Results are reported as for {@link StreamPrinterBench}, with the
+ * score being processes run per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ProcessLauncherBench {
+
+    private static final String SCRIPT = "emit-lines.sh";
+
+    @Param
+    public PrinterMode mode;
+
+    /** Lines per second, or 0 for as fast as the script can write them */
+    @Param({"0", "1000", "20000"})
+    public int lineRate;
+
+    @Param({"1000"})
+    public int nLines;
+
+    /** Line length in bytes, including the newline */
+    @Param({"80"})
+    public int lineLength;
+
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final LatencyWriter writer = new LatencyWriter();
+    private long threads, processes;
+    private File wdir;
+    private ProcessBuilder processBuilder;
+
+    @Setup
+    public void setup() throws IOException {
+
+        this.mode.apply();
+
+        this.wdir = Files.createTempDirectory("sdcp-bench").toFile();
+        File script = new File(this.wdir, SCRIPT);
+        try ( InputStream is = ProcessLauncherBench.class.getResourceAsStream(SCRIPT) ) {
+            if ( is == null )
+                throw new IllegalStateException(SCRIPT + " not found on class path");
+            Files.copy(is, script.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        this.processBuilder = new ProcessBuilder("bash", script.getPath(),
+                Integer.toString(this.nLines), Integer.toString(this.lineRate),
+                Integer.toString(this.lineLength)).directory(this.wdir);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration(IterationParams params) {
+        this.writer.clear();
+        this.writer.setRecording(params.getType() == IterationType.MEASUREMENT);
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration(IterationParams params) {
+        if ( params.getType() == IterationType.MEASUREMENT )
+            System.out.println(String.format("%s, %d lines/s: %s",
+                    this.mode, this.lineRate, this.writer.summary()));
+    }
+
+    @Benchmark
+    public ProcessResult run(StreamCounters counters) throws IOException, InterruptedException {
+
+        long threads0 = this.threadBean.getTotalStartedThreadCount();
+        ProcessLauncher launcher = new ProcessLauncher(this.processBuilder);
+        ProcessResult retval = launcher.execute(this.writer, null, null, null, false, false);
+        if ( retval.getStatus() != 0 )
+            throw new IllegalStateException(SCRIPT + " exited with status " + retval.getStatus());
+
+        this.threads += this.threadBean.getTotalStartedThreadCount() - threads0;
+        this.processes++;
+        counters.bytes += (long) this.nLines * this.lineLength;
+        counters.lines += this.nLines;
+        return retval;
+    }
+
+    @TearDown
+    public void report() {
+        System.out.println();
+        System.out.println(String.format("%s, %d lines/s: %.2f threads started per process",
+                this.mode, this.lineRate, (double) this.threads / this.processes));
+        new File(this.wdir, SCRIPT).delete();
+        this.wdir.delete();
+    }
+
+}
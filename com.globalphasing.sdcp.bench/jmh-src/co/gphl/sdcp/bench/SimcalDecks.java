@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.bench;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import co.gphl.common.namelist.F90NamelistData;
+import co.gphl.common.namelist.F90NamelistGroup;
+import co.gphl.common.namelist.F90NamelistGroupFactory;
+import co.gphl.common.namelist.impl.F90NamelistImpl;
+import co.gphl.sdcp.F90Namelist.v2.GcalAuxGroupFactory;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.CentredGoniostatSettingGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.DetectorGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.DetectorSettingGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.GoniostatSettingGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.LoopCountGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.SegmentGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.SimcalBeamSettingGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.SimcalCrystalGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.SimcalInstrumentGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.SimcalOptionsGroup;
+import co.gphl.sdcp.F90NamelistGroup.v2.impl.SimcalSweepGroup;
+
+/**
+ * Synthetic simcal input decks, laid out like those written for a real
+ * multi-sweep experiment on a segmented detector. The numbers come from a
+ * seeded {@link Random}, so a deck of a given size is the same in every run.
+ */
+final class SimcalDecks {
+
+    /** Number of detector segments, as for a Pilatus 6M */
+    static final int N_SEGMENTS = 60;
+
+    private SimcalDecks() {
+    }
+
+    /**
+     * @param nSweeps number of sweeps, each of which has its own goniostat,
+     * detector and beam settings
+     * @return deck built through the namelist API
+     */
+    static F90NamelistData simcal(int nSweeps) {
+
+        F90NamelistGroupFactory factory = GcalAuxGroupFactory.factory();
+        Random random = new Random(nSweeps);
+        F90NamelistImpl deck = new F90NamelistImpl();
+        F90NamelistGroup group;
+
+        group = SimcalDecks.add(deck, factory, SimcalOptionsGroup.groupName);
+        group.put(SimcalOptionsGroup.nRays, 1);
+        group.put(SimcalOptionsGroup.psfGamma, 0.5);
+        group.put(SimcalOptionsGroup.pixQuantile, 0.998);
+
+        group = SimcalDecks.add(deck, factory, LoopCountGroup.groupName);
+        group.put(LoopCountGroup.nSegments, N_SEGMENTS);
+        group.put(LoopCountGroup.nCrystals, 1);
+        group.put(LoopCountGroup.nSweeps, nSweeps);
+        group.put(LoopCountGroup.nGoniostatSettings, nSweeps);
+        group.put(LoopCountGroup.nCentredGoniostatSettings, nSweeps);
+        group.put(LoopCountGroup.nDetectorSettings, nSweeps);
+        group.put(LoopCountGroup.nBeamSettings, nSweeps);
+
+        group = SimcalDecks.add(deck, factory, SimcalInstrumentGroup.groupName);
+        group.put(SimcalInstrumentGroup.polPlaneN, Arrays.asList(0.0, 1.0, 0.0));
+        group.put(SimcalInstrumentGroup.polFrac, 0.99);
+
+        group = SimcalDecks.add(deck, factory, DetectorGroup.groupName);
+        group.put(DetectorGroup.detXAxis, Arrays.asList(1.0, 0.0, 0.0));
+        group.put(DetectorGroup.detYAxis, Arrays.asList(0.0, 1.0, 0.0));
+        group.put(DetectorGroup.detQx, 0.172);
+        group.put(DetectorGroup.detQy, 0.172);
+        group.put(DetectorGroup.detNx, 2463);
+        group.put(DetectorGroup.detNy, 2527);
+        group.put(DetectorGroup.dSensor, 0.32);
+
+        for ( int i = 0; i < N_SEGMENTS; i++ ) {
+            group = SimcalDecks.add(deck, factory, SegmentGroup.groupName);
+            int col = i % 5, row = i / 5;
+            group.put(SegmentGroup.segXAxis, SimcalDecks.vector(random, 1.0, 0.0, 0.0));
+            group.put(SegmentGroup.segYAxis, SimcalDecks.vector(random, 0.0, 1.0, 0.0));
+            group.put(SegmentGroup.segNxLimits, Arrays.asList(col * 494 + 1, col * 494 + 487));
+            group.put(SegmentGroup.segNyLimits, Arrays.asList(row * 212 + 1, row * 212 + 195));
+            group.put(SegmentGroup.segOrgX, col * 494 * 0.172);
+            group.put(SegmentGroup.segOrgY, row * 212 * 0.172);
+        }
+
+        group = SimcalDecks.add(deck, factory, SimcalCrystalGroup.groupName);
+        group.put(SimcalCrystalGroup.cellRefAngDeg, SimcalDecks.vector(random, 12.0, -43.0, 117.0));
+        group.put(SimcalCrystalGroup.cellDimSd, 0.05);
+        group.put(SimcalCrystalGroup.uMatSdDeg, 0.1);
+        group.put(SimcalCrystalGroup.bWilson, 23.5);
+
+        for ( int i = 1; i <= nSweeps; i++ ) {
+
+            group = SimcalDecks.add(deck, factory, GoniostatSettingGroup.groupName);
+            group.put(GoniostatSettingGroup.id, i);
+            group.put(GoniostatSettingGroup.omegaDeg, 360.0 * random.nextDouble());
+            group.put(GoniostatSettingGroup.kappaDeg, 90.0 * random.nextDouble());
+            group.put(GoniostatSettingGroup.phiDeg, 360.0 * random.nextDouble());
+
+            group = SimcalDecks.add(deck, factory, CentredGoniostatSettingGroup.groupName);
+            group.put(CentredGoniostatSettingGroup.id, i);
+            group.put(CentredGoniostatSettingGroup.goniostatSettingId, i);
+            group.put(CentredGoniostatSettingGroup.trans1, random.nextGaussian());
+            group.put(CentredGoniostatSettingGroup.trans2, random.nextGaussian());
+            group.put(CentredGoniostatSettingGroup.trans3, random.nextGaussian());
+
+            group = SimcalDecks.add(deck, factory, DetectorSettingGroup.groupName);
+            group.put(DetectorSettingGroup.id, i);
+            group.put(DetectorSettingGroup.detCoord, 150.0 + 200.0 * random.nextDouble());
+            group.put(DetectorSettingGroup.twoThetaDeg, 0.0);
+
+            group = SimcalDecks.add(deck, factory, SimcalBeamSettingGroup.groupName);
+            group.put(SimcalBeamSettingGroup.id, i);
+            group.put(SimcalBeamSettingGroup.lambda, 0.9 + 0.1 * random.nextDouble());
+
+            group = SimcalDecks.add(deck, factory, SimcalSweepGroup.groupName);
+            group.put(SimcalSweepGroup.goniostatSettingId, i);
+            group.put(SimcalSweepGroup.centredGoniostatSettingId, i);
+            group.put(SimcalSweepGroup.detectorSettingId, i);
+            group.put(SimcalSweepGroup.beamSettingId, i);
+            group.put(SimcalSweepGroup.startDeg, 360.0 * random.nextDouble());
+            group.put(SimcalSweepGroup.stepDeg, 0.1);
+            group.put(SimcalSweepGroup.nFrames, 1800);
+            group.put(SimcalSweepGroup.exposure, 0.04);
+            group.put(SimcalSweepGroup.imageNo, 1);
+            group.putStringValue(SimcalSweepGroup.nameTemplate, String.format("sweep_%03d_####.cbf", i));
+        }
+
+        return deck;
+    }
+
+    /**
+     * @param deck namelist data
+     * @return {@code deck} in namelist format
+     */
+    static String text(F90NamelistData deck) {
+        StringWriter writer = new StringWriter();
+        try {
+            deck.write(writer);
+        }
+        catch ( IOException e ) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * @param nValues number of values
+     * @return comma and space separated list of real numbers, with a repeat
+     * count here and there as Fortran would write them
+     */
+    static String numList(int nValues) {
+        Random random = new Random(nValues);
+        StringBuilder sb = new StringBuilder(12 * nValues);
+        for ( int i = 0; i < nValues; ) {
+            if ( sb.length() > 0 )
+                sb.append(i % 8 == 0 ? " " : ", ");
+            if ( i % 64 == 63 && i + 4 <= nValues ) {
+                sb.append("4*0.0");
+                i += 4;
+            }
+            else {
+                sb.append(String.format("%.6f", 1000.0 * random.nextDouble()));
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param nValues number of values
+     * @return list of Fortran logical values in the various forms allowed
+     */
+    static String boolList(int nValues) {
+        String[] forms = { ".TRUE.", ".FALSE.", "T", "F", ".true.", ".false." };
+        StringBuilder sb = new StringBuilder(7 * nValues);
+        for ( int i = 0; i < nValues; i++ ) {
+            if ( i > 0 )
+                sb.append(", ");
+            sb.append(forms[i % forms.length]);
+        }
+        return sb.toString();
+    }
+
+    private static F90NamelistGroup add(F90NamelistImpl deck, F90NamelistGroupFactory factory,
+            String groupName) {
+        F90NamelistGroup group = factory.newInstance(groupName, true, deck.size() + 1);
+        deck.add(group);
+        return group;
+    }
+
+    // Nearly a unit vector (or cell), as refined values are never exact
+    private static List<Double> vector(Random random, double... values) {
+        List<Double> retval = new ArrayList<Double>(values.length);
+        for ( double v: values )
+            retval.add(v + 1.0e-4 * random.nextGaussian());
+        return retval;
+    }
+
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+import co.gphl.common.io.streams.StreamPrinter;
+
+/**
+ * Copying a stream of lines that arrive at a steady rate with {@link StreamPrinter},
+ * in each of its {@link PrinterMode modes}. The score is streams copied per second;
+ * bytes and lines per second are reported as secondary results. Line latencies are
+ * printed after each measurement iteration and threads started per stream at the end
+ * of each run, and allocation
+ * rates come from the {@code gc} profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StreamPrinterBench {
+
+    @Param
+    public PrinterMode mode;
+
+    /** Lines per second, or 0 for as fast as they can be copied */
+    @Param({"0", "10000", "100000"})
+    public int lineRate;
+
+    @Param({"5000"})
+    public int nLines;
+
+    /** Line length in bytes, including the newline */
+    @Param({"80"})
+    public int lineLength;
+
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final LatencyWriter writer = new LatencyWriter();
+    private long threads, streams;
+
+    @Setup
+    public void setup() {
+        this.mode.apply();
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration(IterationParams params) {
+        this.writer.clear();
+        this.writer.setRecording(params.getType() == IterationType.MEASUREMENT);
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration(IterationParams params) {
+        if ( params.getType() == IterationType.MEASUREMENT )
+            System.out.println(String.format("%s, %d lines/s: %s",
+                    this.mode, this.lineRate, this.writer.summary()));
+    }
+
+    @Benchmark
+    public void copy(StreamCounters counters) throws InterruptedException {
+
+        long threads0 = this.threadBean.getTotalStartedThreadCount();
+        StreamPrinter printer = new StreamPrinter(
+                new SyntheticLineStream(this.nLines, this.lineRate, this.lineLength),
+                this.writer, null, false, null, 0, 0, false);
+        printer.start();
+        printer.join();
+
+        this.threads += this.threadBean.getTotalStartedThreadCount() - threads0;
+        this.streams++;
+        counters.bytes += printer.getBytesRead();
+        counters.lines += this.nLines;
+    }
+
+    @TearDown
+    public void report() {
+        System.out.println();
+        System.out.println(String.format("%s, %d lines/s: %.2f threads started per stream",
+                this.mode, this.lineRate, (double) this.threads / this.streams));
+    }
+
+}
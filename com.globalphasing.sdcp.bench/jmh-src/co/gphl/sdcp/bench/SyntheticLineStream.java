@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.sdcp.bench;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stream of lines that become available at a steady rate, as the output of a
+ * process does through a pipe. Reads block until the next line is due, and
+ * {@link #available()} counts only the lines that are already due, which is
+ * what decides how {@link co.gphl.common.io.streams.StreamPrinter StreamPrinter}
+ * buffers.
+ *
+ * <p>The lines have the same layout as those written by {@code emit-lines.sh}, each
+ * starting with the time at which it was due, as given by {@link LatencyWriter#nowMicros()}.</p>
+ */
+final class SyntheticLineStream extends InputStream {
+
+    static final int MIN_LINE_LENGTH = 27;
+
+    private final int nLines, lineLength;
+    private final long startMicros;
+    private final double microsPerLine;
+    private final byte[] line;
+    private int nextLine = 0, pos;
+
+    /**
+     * @param nLines number of lines
+     * @param linesPerSec rate at which lines become due, or {@code 0} for all at once
+     * @param lineLength length of each line, including the newline
+     */
+    SyntheticLineStream(int nLines, int linesPerSec, int lineLength) {
+        if ( lineLength < MIN_LINE_LENGTH )
+            throw new IllegalArgumentException("Need lineLength >= " + MIN_LINE_LENGTH + ", got " + lineLength);
+        this.nLines = nLines;
+        this.lineLength = lineLength;
+        this.microsPerLine = linesPerSec > 0 ? 1.0e6 / linesPerSec : 0.0;
+        this.line = new byte[lineLength];
+        Arrays.fill(this.line, (byte) 'x');
+        this.line[lineLength - 1] = '\n';
+        this.pos = lineLength;
+        this.startMicros = LatencyWriter.nowMicros();
+    }
+
+    @Override
+    public int read() {
+        if ( this.pos == this.lineLength ) {
+            if ( this.nextLine == this.nLines )
+                return -1;
+            this.nextLine();
+        }
+        return this.line[this.pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+
+        if ( len == 0 )
+            return 0;
+
+        int retval = 0;
+        while ( retval < len ) {
+            if ( this.pos == this.lineLength ) {
+                // Block for the first line only: after that, take what is due
+                if ( this.nextLine == this.nLines || ( retval > 0 && this.due() <= this.nextLine ) )
+                    break;
+                this.nextLine();
+            }
+            int n = Math.min(len - retval, this.lineLength - this.pos);
+            System.arraycopy(this.line, this.pos, b, off + retval, n);
+            this.pos += n;
+            retval += n;
+        }
+        return retval == 0 ? -1 : retval;
+    }
+
+    @Override
+    public int available() {
+        int dueLines = Math.max(this.due() - this.nextLine, 0);
+        return this.lineLength - this.pos + dueLines * this.lineLength;
+    }
+
+    // Number of lines that are due by now
+    private int due() {
+        if ( this.microsPerLine == 0.0 )
+            return this.nLines;
+        long elapsed = LatencyWriter.nowMicros() - this.startMicros;
+        return (int) Math.min(this.nLines, elapsed / this.microsPerLine + 1);
+    }
+
+    private void nextLine() {
+
+        long dueAt = this.startMicros + (long) (this.nextLine * this.microsPerLine);
+        long wait;
+        while ( ( wait = dueAt - LatencyWriter.nowMicros() ) > 0L )
+            LockSupport.parkNanos(1000L * wait);
+
+        // As String.format("%016d %08d ", ...) would, but without making garbage
+        SyntheticLineStream.putDigits(this.line, 0, 16, dueAt);
+        this.line[16] = ' ';
+        SyntheticLineStream.putDigits(this.line, 17, 8, this.nextLine);
+        this.line[25] = ' ';
+        this.nextLine++;
+        this.pos = 0;
+    }
+
+    // Writes the last nDigits decimal digits of value, with leading zeros
+    private static void putDigits(byte[] b, int off, int nDigits, long value) {
+        for ( int i = off + nDigits - 1; i >= off; i-- ) {
+            b[i] = (byte) ( '0' + value % 10L );
+            value /= 10L;
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.common.io.streams;
+
+/**
+ * Flush policy for a buffered {@link StreamPrinter} that adapts to the rate at
+ * which data arrive on the input stream:
+ *
+ * <ul>
+ * <li>when the rate is below {@link #getLowRate()} bytes/s, buffered data are
+ * sent to the destination(s) as soon as nothing more is available from the stream</li>
+ * <li>at higher rates, writes are coalesced for up to {@link #getMaxLatencyMillis()}
+ * milliseconds, and the buffer is grown (up to {@link #getMaxBufSize()}) so that
+ * it can hold roughly that much data</li>
+ * </ul>
+ *
+ * <p>An instance holds the rate estimate for the stream it is used with, so
+ * it must not be shared between {@link StreamPrinter} instances.</p>
+ *
+ * @see StreamPrinter#StreamPrinter(java.io.InputStream, java.io.Writer, java.io.File, boolean, String, AdaptiveFlushPolicy, boolean)
+ */
+public final class AdaptiveFlushPolicy {
+
+    public final static int defaultMaxBufSize = 65536;
+    public final static int defaultLowRate = 8192;
+
+    // Rate is re-estimated over windows of this length
+    private final static long windowNanos = 50000000L;
+    // Weight given to the most recent window in the rate estimate
+    private final static double alpha = 0.5;
+
+    private final int initialBufSize, maxBufSize, maxLatencyMillis, lowRate;
+    private final long maxLatencyNanos;
+
+    private volatile double rate = 0.0;
+    private long windowStart = -1L, windowBytes = 0L;
+
+    /**
+     * Creates a policy with the default maximum buffer size and low-rate threshold.
+     *
+     * @param initialBufSize initial buffer size in bytes
+     * @param maxLatencyMillis maximum time in milliseconds for which data may be held
+     * in the buffer before being sent to the destination(s)
+     */
+    public AdaptiveFlushPolicy(int initialBufSize, int maxLatencyMillis) {
+        this(initialBufSize, Math.max(initialBufSize, AdaptiveFlushPolicy.defaultMaxBufSize),
+                maxLatencyMillis, AdaptiveFlushPolicy.defaultLowRate);
+    }
+
+    /**
+     * @param initialBufSize initial buffer size in bytes
+     * @param maxBufSize size in bytes beyond which the buffer will not be grown
+     * @param maxLatencyMillis maximum time in milliseconds for which data may be held
+     * in the buffer before being sent to the destination(s)
+     * @param lowRate rate of input in bytes/s below which data are sent to the
+     * destination(s) without waiting for more input
+     *
+     * @throws IllegalArgumentException if {@code initialBufSize <= 0},
+     * {@code maxBufSize < initialBufSize}, {@code maxLatencyMillis < 0} or {@code lowRate < 0}
+     */
+    public AdaptiveFlushPolicy(int initialBufSize, int maxBufSize, int maxLatencyMillis, int lowRate) {
+
+        if ( initialBufSize <= 0 || maxBufSize < initialBufSize )
+            throw new IllegalArgumentException(
+                    String.format("Bad buffer sizes: initial %d, maximum %d", initialBufSize, maxBufSize) );
+        if ( maxLatencyMillis < 0 || lowRate < 0 )
+            throw new IllegalArgumentException(
+                    String.format("Bad latency/rate: %dms, %d bytes/s", maxLatencyMillis, lowRate) );
+
+        this.initialBufSize = initialBufSize;
+        this.maxBufSize = maxBufSize;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.maxLatencyNanos = maxLatencyMillis * 1000000L;
+        this.lowRate = lowRate;
+    }
+
+    public int getInitialBufSize() {
+        return this.initialBufSize;
+    }
+
+    public int getMaxBufSize() {
+        return this.maxBufSize;
+    }
+
+    public int getMaxLatencyMillis() {
+        return this.maxLatencyMillis;
+    }
+
+    public int getLowRate() {
+        return this.lowRate;
+    }
+
+    /**
+     * Returns the current estimate of the rate of input.
+     *
+     * @return rate in bytes/s
+     */
+    public double getRate() {
+        return this.rate;
+    }
+
+    /**
+     * Updates the rate estimate. Called by the pumping thread after every read.
+     *
+     * @param nBytes number of bytes read
+     * @param now value of {@link System#nanoTime()} when the read completed
+     */
+    void bytesRead(int nBytes, long now) {
+
+        if ( this.windowStart < 0L )
+            this.windowStart = now;
+
+        this.windowBytes += nBytes;
+
+        long elapsed = now - this.windowStart;
+        if ( elapsed >= AdaptiveFlushPolicy.windowNanos ) {
+            double windowRate = this.windowBytes * 1.0e9 / elapsed;
+            this.rate = alpha * windowRate + ( 1.0 - alpha ) * this.rate;
+            this.windowStart = now;
+            this.windowBytes = 0L;
+        }
+    }
+
+    /**
+     * Decides how long to wait for more input before sending buffered data on.
+     *
+     * @param oldest value of {@link System#nanoTime()} when the oldest byte in the buffer was read
+     * @param now current value of {@link System#nanoTime()}
+     * @return number of milliseconds to wait for more input, or 0 if the buffer should
+     * be emptied now
+     */
+    long coalesceMillis(long oldest, long now) {
+
+        if ( this.rate < this.lowRate )
+            return 0L;
+
+        long remaining = this.maxLatencyNanos - ( now - oldest );
+        if ( remaining <= 0L )
+            return 0L;
+
+        // Poll in steps, so that data arriving part way through the
+        // wait are picked up before the latency bound is reached.
+        return Math.max(1L, Math.min(remaining, this.maxLatencyNanos / 4L) / 1000000L);
+    }
+
+    /**
+     * @param oldest value of {@link System#nanoTime()} when the oldest byte in the buffer was read
+     * @param now current value of {@link System#nanoTime()}
+     * @return {@code true} if buffered data have been held for the maximum latency
+     */
+    boolean isLatencyExceeded(long oldest, long now) {
+        return now - oldest >= this.maxLatencyNanos;
+    }
+
+    /**
+     * Returns the buffer size to use at the current rate of input: large enough to
+     * hold the data that arrive within the maximum latency. The buffer is never shrunk.
+     *
+     * @param current current buffer size
+     * @return new buffer size
+     */
+    int bufferSize(int current) {
+
+        long wanted = (long) ( this.rate * this.maxLatencyMillis / 1000.0 );
+        if ( wanted <= current || current >= this.maxBufSize )
+            return current;
+
+        int newSize = current;
+        while ( newSize < wanted && newSize < this.maxBufSize )
+            newSize = (int) Math.min( 2L * newSize, (long) this.maxBufSize );
+        return newSize;
+    }
+
+}
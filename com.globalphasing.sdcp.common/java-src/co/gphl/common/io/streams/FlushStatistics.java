@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.common.io.streams;
+
+/**
+ * Counters describing how a {@link StreamPrinter} has sent data on to its
+ * destination(s). The counters are updated by the pumping thread only, and
+ * may be read from any thread.
+ *
+ * <p>The latency of a flush is the time between the oldest data in the
+ * buffer being read from the stream and the buffer being written to the
+ * destination(s). In line-by-line mode, the amounts are in characters
+ * (including the line terminator) rather than bytes.</p>
+ */
+public final class FlushStatistics {
+
+    private volatile long flushCount = 0L, bytesFlushed = 0L;
+    private volatile long totalLatencyNanos = 0L, maxLatencyNanos = 0L;
+
+    FlushStatistics() {
+    }
+
+    // Single writer, so no need to make these updates atomic.
+    void record(long nBytes, long latencyNanos) {
+        this.flushCount++;
+        this.bytesFlushed += nBytes;
+        this.totalLatencyNanos += latencyNanos;
+        if ( latencyNanos > this.maxLatencyNanos )
+            this.maxLatencyNanos = latencyNanos;
+    }
+
+    public long getFlushCount() {
+        return this.flushCount;
+    }
+
+    public long getBytesFlushed() {
+        return this.bytesFlushed;
+    }
+
+    public double getMeanBytesPerFlush() {
+        long n = this.flushCount;
+        return n == 0L ? 0.0 : (double) this.bytesFlushed / n;
+    }
+
+    public double getMeanLatencyMillis() {
+        long n = this.flushCount;
+        return n == 0L ? 0.0 : this.totalLatencyNanos / 1.0e6 / n;
+    }
+
+    public double getMaxLatencyMillis() {
+        return this.maxLatencyNanos / 1.0e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d flushes, %.1f bytes/flush, latency mean %.2fms max %.2fms",
+                this.getFlushCount(), this.getMeanBytesPerFlush(),
+                this.getMeanLatencyMillis(), this.getMaxLatencyMillis());
+    }
+}
@@ -10,6 +10,7 @@ package co.gphl.common.io.streams;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
@@ -23,6 +24,8 @@ import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
 import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
  * Class to use a {@link PrintStream} to output the data being received
@@ -75,12 +78,14 @@ import java.util.Arrays;
  *
  */
 public class StreamPrinter implements Runnable {
-    private InputStream is;
+    private CountingInputStream is;
     private Writer outputWriter = null;
     private File outputFile;
     private boolean append;
     private String header;
     final private int cbufSize, delay;
+    final private AdaptiveFlushPolicy policy;
+    final private FlushStatistics statistics = new FlushStatistics();
     
     private Thread thread = null;
     
@@ -91,6 +96,7 @@ public class StreamPrinter implements Runnable {
     private String lastLine = null;
     private CharBuffer lineSepBuf;
     private final boolean captureLastLine;
+    private volatile Consumer<String> lineSink = null;
     
     /**
      * System property name for sizing internal character buffer, where caller has specified
@@ -107,6 +113,14 @@ public class StreamPrinter implements Runnable {
     public final static String DELAYPROPERTY = "co.gphl.streamprinter.delay";
     public final static int defaultDelay = 100;
     
+    /**
+     * System property name for switching to an {@link AdaptiveFlushPolicy}, where
+     * caller has specified the default buffer size. If the value starts with {@code T}
+     * or {@code Y} (case insensitive), the buffer size is used as the initial size of
+     * the buffer, and the delay as the maximum latency.
+     */
+    public final static String ADAPTIVEPROPERTY = "co.gphl.streamprinter.adaptive";
+    
     /**
      * Capture the line-by-line output of a stream and direct it to a {@link Writer}, a {@link File}, or both.
      * {@code outputWriter} is flushed after every line, so can be used where an immediate
@@ -176,18 +190,54 @@ public class StreamPrinter implements Runnable {
      */
     public StreamPrinter(InputStream inputStream, Writer outputWriter, File outputFile,
             boolean append, String header, int cbufSize, int delay, boolean captureLastLine) {
+        this(inputStream, outputWriter, outputFile, append, header, cbufSize, delay, captureLastLine, null);
+    }
+
+    /**
+     * Capture the output of a stream and direct it to a {@link Writer}, a {@link File}, or both,
+     * using a buffer whose size and flushing behaviour adapt to the rate of input as
+     * described for {@link AdaptiveFlushPolicy}. In other respects this behaves as
+     * {@link #StreamPrinter(InputStream, Writer, File, boolean, String, int, int, boolean)}
+     * does with a positive buffer size.
+     * 
+     * @param inputStream
+     * @param outputWriter
+     * @param outputFile
+     * @param append if {@code true}, output is appended to {@code outputFile}.
+     * @param header if not {@code null}, start output with this string
+     * @param policy flush policy. Must not be shared with any other instance.
+     * @param captureLastLine if {@code true} the last line of the stream will be available
+     * from the method {@link #getLastLine()}
+     * 
+     * @throws UnsupportedOperationException if
+     * {@code captureLastLine && System.getProperty("line.separator").length() > 1}
+     */
+    public StreamPrinter(InputStream inputStream, Writer outputWriter, File outputFile,
+            boolean append, String header, AdaptiveFlushPolicy policy, boolean captureLastLine) {
+        this(inputStream, outputWriter, outputFile, append, header,
+                Objects.requireNonNull(policy, "policy must not be null").getInitialBufSize(),
+                policy.getMaxLatencyMillis(), captureLastLine, policy);
+    }
+
+    private StreamPrinter(InputStream inputStream, Writer outputWriter, File outputFile,
+            boolean append, String header, int cbufSize, int delay, boolean captureLastLine,
+            AdaptiveFlushPolicy policy) {
 
-        this.is = inputStream;
+        this.is = new CountingInputStream(inputStream);
         this.outputWriter = outputWriter;
         this.outputFile = outputFile;
         this.append = append;
         this.header = header;
         this.captureLastLine = captureLastLine;
 
-        if ( cbufSize == 0 ) {
+        boolean adaptive = false;
+        if ( policy == null && cbufSize == 0 ) {
             String cbufSizeStr = System.getProperty(StreamPrinter.BUFSIZEPROPERTY);
             if ( cbufSizeStr != null )
                 cbufSize = Integer.parseInt(cbufSizeStr);
+            String adaptiveStr = System.getProperty(StreamPrinter.ADAPTIVEPROPERTY);
+            adaptive = adaptiveStr != null && !adaptiveStr.isEmpty() &&
+                    "YyTt".indexOf(adaptiveStr.charAt(0)) > -1;
         }
         
         if ( cbufSize == 0 )
@@ -195,7 +245,7 @@ public class StreamPrinter implements Runnable {
         
         this.cbufSize = cbufSize;
 
-        if ( delay == 0 ) {
+        if ( policy == null && delay == 0 ) {
             String delayStr = System.getProperty(StreamPrinter.DELAYPROPERTY);
             if ( delayStr != null )
                 delay = Integer.parseInt(delayStr);
@@ -210,6 +260,11 @@ public class StreamPrinter implements Runnable {
         
         this.delay = delay;
         
+        // A negative buffer size from the system property still means line-by-line
+        if ( adaptive && this.cbufSize > 0 )
+            policy = new AdaptiveFlushPolicy(this.cbufSize, this.delay);
+        this.policy = policy;
+        
         if ( this.cbufSize > 0 ) {
             this.lineSepBuf = CharBuffer.wrap(System.getProperty("line.separator"));
             
@@ -229,10 +284,12 @@ public class StreamPrinter implements Runnable {
         try ( Writer fileWriter = this.outputFile == null ?
                 null : new FileWriter(outputFile, this.append) ) {
 
-            if ( fileWriter != null )
-                fileWriter.write(this.header);
-            if ( this.outputWriter != null )
-                this.outputWriter.write(this.header);
+            if ( this.header != null ) {
+                if ( fileWriter != null )
+                    fileWriter.write(this.header);
+                if ( this.outputWriter != null )
+                    this.outputWriter.write(this.header);
+            }
 
 
             if ( this.cbufSize <= 0 )
@@ -254,28 +311,47 @@ public class StreamPrinter implements Runnable {
     private void pipeLineByLine(BufferedReader br, Writer fileWriter) throws IOException {
 
         String line=null;
+        long readAt;
 
         // For efficiency, don't test for destinations inside a
         // "while ( (line = br.readLine()) != null)" loop
         if ( this.outputWriter != null && fileWriter == null ) {
             while ( (line = br.readLine()) != null) {
+                readAt = System.nanoTime();
                 this.outputWriter.write(line + "\n");
                 this.outputWriter.flush();
                 this.lastLine = line;
+                this.sinkLine(line);
+                this.statistics.record(line.length() + 1, System.nanoTime() - readAt);
             }
         }
         else if ( this.outputWriter != null && fileWriter != null ) {
             while ( (line = br.readLine()) != null) {
+                readAt = System.nanoTime();
                 this.outputWriter.write(line + "\n");
                 this.outputWriter.flush();
                 fileWriter.write(line + "\n");
                 // Don't flush file writer.
                 this.lastLine = line;
+                this.sinkLine(line);
+                this.statistics.record(line.length() + 1, System.nanoTime() - readAt);
             }
         }
         else if ( this.outputWriter == null && fileWriter != null ) {
-            fileWriter.write(line + "\n");
-            this.lastLine = line;
+            while ( (line = br.readLine()) != null) {
+                readAt = System.nanoTime();
+                fileWriter.write(line + "\n");
+                this.lastLine = line;
+                this.sinkLine(line);
+                this.statistics.record(line.length() + 1, System.nanoTime() - readAt);
+            }
+        }
+        else {
+            // Only the line sink, if anything, wants the output
+            while ( (line = br.readLine()) != null) {
+                this.lastLine = line;
+                this.sinkLine(line);
+            }
         }
 
     }
@@ -301,13 +377,20 @@ public class StreamPrinter implements Runnable {
         ByteBuffer bbuf = ByteBuffer.allocate(this.cbufSize);
         byte[] barray = bbuf.array();
         char[] carray = cbuf.array();
-        int readThisTime = 0, available, bpos, cpos, clim;
+        int readThisTime = 0, available, bpos, cpos, clim, newSize;
+
+        // These variables are used to apply the adaptive flush policy (if any)
+        // and to gather flush statistics
+        long oldest = 0L, now, wait, bytesSinceFlush = 0L;
 
         // These variables are used in the code that captures the last line of stdout
         StringBuilder lastLineBldr = new StringBuilder(200);
         int lineSepLen = lineSepBuf.length(), startOfLastLine, searchBolFrom;
         boolean gotEol = false;
         
+        // Accumulates the current line for the line sink, if there is one
+        StringBuilder sinkLineBldr = new StringBuilder(200);
+        
         CharsetDecoder decoder = StreamPrinter.charset.newDecoder();
         decoder.onMalformedInput(CodingErrorAction.REPORT);
         decoder.onUnmappableCharacter(CodingErrorAction.REPORT);
@@ -315,6 +398,18 @@ public class StreamPrinter implements Runnable {
         
         do {
 
+            // Only resize the buffers when they are empty, so that we don't have
+            // to copy any partially decoded input across.
+            if ( this.policy != null && bbuf.position() == 0 ) {
+                newSize = this.policy.bufferSize(bbuf.capacity());
+                if ( newSize > bbuf.capacity() ) {
+                    cbuf = CharBuffer.allocate(newSize);
+                    bbuf = ByteBuffer.allocate(newSize);
+                    barray = bbuf.array();
+                    carray = cbuf.array();
+                }
+            }
+
             /* This inner loop does the following:
              * (i) If the receiving buffer is empty, read (blocking) until we get something from
              * the input stream.
@@ -322,13 +417,17 @@ public class StreamPrinter implements Runnable {
              * from the stream, read it (non-blocking) and go around the loop again.
              * (iii) If the receiving buffer is not empty and there is nothing available from
              * the input stream, pause for this.delay (in milliseconds) and check again. If something has
-             * become available, handle as (ii)
+             * become available, handle as (ii). With an adaptive policy, the pause is decided by
+             * the policy, and we keep pausing until either something becomes available or the
+             * policy says that the buffer should be emptied.
              * 
              * We exit the loop on one of the following conditions:
              * (1) Receiving buffer is full (loop's while(...) condition not satisfied)
              * (2) A read from the stream indicates end-of-stream (break)
              * (3) In case (iii), nothing more is available from the stream after
              * the second check (break)
+             * (4) With an adaptive policy, the oldest data in the buffer have been held for
+             * the policy's maximum latency (break)
              * 
              * On exit from this loop, if the buffer is not empty its contents are decoded
              * and emitted.
@@ -337,23 +436,33 @@ public class StreamPrinter implements Runnable {
                 available = is.available();
                 bpos = bbuf.position();
 
-                if ( available == 0 && bpos > 0 ) {
+                // If all that is in the buffer is the start of a character left over from
+                // the last time it was emptied, there is nothing to send on: block instead.
+                if ( available == 0 && bpos > 0 && bytesSinceFlush > 0L ) {
+
+                    wait = this.policy == null ? this.delay :
+                        this.policy.coalesceMillis(oldest, System.nanoTime());
+                    if ( this.policy != null && wait <= 0L )
+                        break;
 
                     try {
-                        Thread.sleep(this.delay);
+                        Thread.sleep(wait);
                     } catch (InterruptedException e) {
                         throw new RuntimeException(e);
                     }
 
                     available = is.available();
-                    if ( available == 0 )
-                        break;
+                    if ( available == 0 ) {
+                        if ( this.policy == null )
+                            break;
+                        continue;
+                    }
                 }
                 
                 if ( available == 0 )
-                    // bpos can only be 0 if available == 0 here, so OK to use the
-                    // single-argument form of read()
-                    readThisTime = is.read( barray );
+                    // bpos can only be 0 here, or the buffer only contains a partial character,
+                    // so a blocking read is what we want.
+                    readThisTime = is.read( barray, bpos, bbuf.remaining() );
                 else
                     // Never let the len parameter of is.read(...) be 0, otherwise we will not
                     // detect the end of stream and never exit this loop.
@@ -363,6 +472,17 @@ public class StreamPrinter implements Runnable {
                     break;
                 bbuf.position( bpos + readThisTime );
 
+                now = System.nanoTime();
+                if ( bytesSinceFlush == 0L )
+                    oldest = now;
+                bytesSinceFlush += readThisTime;
+
+                if ( this.policy != null ) {
+                    this.policy.bytesRead(readThisTime, now);
+                    if ( this.policy.isLatencyExceeded(oldest, now) )
+                        break;
+                }
+
             } while ( bbuf.hasRemaining() );
 
             /* When the input stream is producing data rapidly, we will be handling
@@ -386,6 +506,8 @@ public class StreamPrinter implements Runnable {
                 }
                 if ( fileWriter != null )
                     fileWriter.write(cbuf.array(), cpos, cbuf.remaining());
+                if ( this.lineSink != null )
+                    this.sinkLines(carray, cpos, clim, sinkLineBldr);
 
                 if ( decodeResult.isError() ) {
                     String msg = "\nError: Attempt to decode output of subprocess returned a\n"
@@ -462,9 +584,112 @@ public class StreamPrinter implements Runnable {
                 }
                 bbuf.compact();
                 cbuf.clear();
+                
+                // Anything left over is the start of a multi-byte character: leave
+                // it in the buffer until the rest of the character has been read.
+                if ( decodeResult != null && decodeResult.isUnderflow() )
+                    break;
+            }
+            
+            if ( bytesSinceFlush > 0L ) {
+                now = System.nanoTime();
+                this.statistics.record(bytesSinceFlush, now - oldest);
+                bytesSinceFlush = 0L;
+                oldest = now;
             }
             
         } while ( readThisTime >= 0 );
+        
+        // Last line may not have been terminated
+        if ( sinkLineBldr.length() > 0 )
+            this.sinkLine(sinkLineBldr.toString());
+    }
+    
+    // Passes each complete line in carray[from, to) to the line sink. A line that
+    // is not yet complete is kept in lineBldr until the rest of it arrives.
+    private void sinkLines(char[] carray, int from, int to, StringBuilder lineBldr) {
+        
+        int start = from, end;
+        for ( int i = from; i < to; i++ ) {
+            if ( carray[i] != '\n' )
+                continue;
+            end = i > start && carray[i - 1] == '\r' ? i - 1 : i;
+            lineBldr.append(carray, start, end - start);
+            this.sinkLine(lineBldr.toString());
+            lineBldr.setLength(0);
+            start = i + 1;
+        }
+        lineBldr.append(carray, start, to - start);
+    }
+    
+    private void sinkLine(String line) {
+        
+        Consumer<String> sink = this.lineSink;
+        if ( sink == null )
+            return;
+        
+        try {
+            sink.accept(line);
+        }
+        catch (RuntimeException e) {
+            // Carry on copying the stream, or the process could block on a full pipe
+            this.lineSink = null;
+            System.err.println("Line sink failed: no more lines will be passed to it");
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Sets a consumer that is given each line of the input stream as soon as it has been
+     * read, without its line terminator. It is called on this instance's thread, so it
+     * should not block. If it throws, it is not called again.
+     * 
+     * @param lineSink consumer for lines, or {@code null} for none
+     * @throws IllegalStateException if {@link #start()} has already been called
+     */
+    public void setLineSink(Consumer<String> lineSink) {
+        if ( this.thread != null )
+            throw new IllegalStateException("Line sink must be set before start() is called");
+        this.lineSink = lineSink;
+    }
+    
+    /**
+     * Returns the counters describing how data have been sent to the destination(s) so far.
+     * 
+     * @return flush statistics for this instance
+     */
+    public FlushStatistics getFlushStatistics() {
+        return this.statistics;
+    }
+    
+    /**
+     * Returns the adaptive flush policy used by this instance.
+     * 
+     * @return flush policy, or {@code null} if this instance uses a fixed buffer size
+     * and delay, or operates line-by-line
+     */
+    public AdaptiveFlushPolicy getFlushPolicy() {
+        return this.policy;
+    }
+    
+    /**
+     * Returns the number of bytes read from the input stream so far.
+     * 
+     * @return bytes read
+     */
+    public long getBytesRead() {
+        return this.is.count;
+    }
+    
+    /**
+     * Returns the time at which the first byte was read from the input stream,
+     * as given by {@link System#nanoTime()}. Only meaningful if
+     * {@link #getBytesRead()} {@code > 0}.
+     * 
+     * @return time of first byte in nanoseconds
+     */
+    public long getFirstByteNanos() {
+        return this.is.firstByteNanos;
     }
     
     public boolean isCaptureLastLine() {
@@ -500,6 +725,21 @@ public class StreamPrinter implements Runnable {
         this.thread.start();
     }
 
+    /**
+     * Tests whether the thread that was created with the {@link #start()} method
+     * has finished copying the stream. Unlike {@link #join()}, this never blocks.
+     * 
+     * @return {@code true} if the thread has terminated
+     * @throws IllegalStateException if {@link #start()} has not been previously
+     * invoked on this instance.
+     */
+    public boolean isFinished() {
+        if ( this.thread == null )
+            throw new IllegalStateException("BUG: No started thread associated with this StreamPrinter: "
+                    + "have you forgotten to call start()?");
+        return this.thread.getState() == Thread.State.TERMINATED;
+    }
+
     /**
      * Calls {@link Thread#join()} on the thread that was created with the
      * {@link #start()} instance.
@@ -518,4 +758,71 @@ public class StreamPrinter implements Runnable {
         this.thread.join();
     }
 
+    /**
+     * Calls {@link Thread#join(long)} on the thread that was created with the
+     * {@link #start()} instance.
+     * 
+     * @param millis maximum time to wait in milliseconds, or {@code 0} to wait forever
+     * @return {@code true} if the thread has finished
+     * @throws IllegalStateException if {@link #start()} has not been previously
+     * invoked on this instance, or the thread is in a {@link Thread.State#NEW}
+     * state.
+     * @throws InterruptedException
+     */
+    public boolean join(long millis) throws InterruptedException {
+        Thread.State state = this.thread == null ? null : this.thread.getState();
+        if ( state == null || state == Thread.State.NEW )
+            throw new IllegalStateException("BUG: No started thread associated with this StreamPrinter: "
+                    + "have you forgotten to call start()?");
+        
+        this.thread.join(millis);
+        return this.thread.getState() == Thread.State.TERMINATED;
+    }
+
+    // Keeps count of the bytes read, and notes when the first one arrived. Only
+    // the printer thread reads, so a volatile is enough to publish the counts.
+    private static final class CountingInputStream extends FilterInputStream {
+        
+        private volatile long count = 0L, firstByteNanos = 0L;
+        
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+        
+        private void counted(long n) {
+            if ( n <= 0L )
+                return;
+            if ( this.count == 0L )
+                this.firstByteNanos = System.nanoTime();
+            this.count += n;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if ( b >= 0 )
+                this.counted(1L);
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            this.counted(n);
+            return n;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            this.counted(skipped);
+            return skipped;
+        }
+        
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
 }
@@ -9,6 +9,10 @@ package co.gphl.common.namelist;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 
 
 /**
@@ -27,6 +31,34 @@ public interface NamelistData {
      */
     public void write( File file ) throws IOException;
     
+    /**
+     * Writes the contents in namelist form to a writer, which is flushed
+     * but not closed, so that they can be handed to an application without
+     * going through a file. The default implementation writes them to a
+     * temporary file with {@link #write(File)} and copies that: implementations
+     * should override it to write directly.
+     * 
+     * @param writer
+     * @throws IOException
+     */
+    public default void write( Writer writer ) throws IOException {
+        
+        File tmp = File.createTempFile("namelist", ".nml");
+        try {
+            this.write(tmp);
+            try ( Reader reader = Files.newBufferedReader(tmp.toPath(), Charset.defaultCharset()) ) {
+                char[] buf = new char[8192];
+                int n;
+                while ( ( n = reader.read(buf) ) >= 0 )
+                    writer.write(buf, 0, n);
+            }
+            writer.flush();
+        }
+        finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+    
     /**
      * Sets or unsets the use of a comma character as a value separator.
      * Default is set.
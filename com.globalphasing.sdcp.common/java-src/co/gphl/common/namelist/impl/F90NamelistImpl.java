@@ -9,9 +9,12 @@ package co.gphl.common.namelist.impl;
 
 import java.io.File;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -131,7 +134,7 @@ public class F90NamelistImpl extends ArrayList<F90NamelistGroup> implements
      * @param appName application name. Not currently used.
      * @throws IllegalArgumentException if {@code factory == null}
      */
-    private F90NamelistImpl( F90NamelistGroupFactory factory, String appName ) {
+    protected F90NamelistImpl( F90NamelistGroupFactory factory, String appName ) {
         this(factory);
         this.appName = ( appName == null ? "" : appName.toLowerCase() );
     }
@@ -179,6 +182,25 @@ public class F90NamelistImpl extends ArrayList<F90NamelistGroup> implements
         this(factory, null, nlFile);        
     }
 
+    /**
+     * Instantiates new F90Namelist instance by reading namelist-formatted data from
+     * a reader, for example data held in memory. The reader is not closed.
+     * 
+     * @param factory namelist group factory for mapping namelist group names to their
+     * corresponding Java types
+     * @param appName application name. Not currently used.
+     * @param reader source of namelist-formatted data
+     * @throws IOException
+     * @throws IllegalArgumentException if {@code factory == null} or {@code reader == null}
+     */
+    public F90NamelistImpl( F90NamelistGroupFactory factory, String appName, Reader reader )
+            throws IOException
+    {
+        this(factory, appName);
+        this.read(new LineNumberReader(
+                Objects.requireNonNull(reader, "reader argument must not be null")));
+    }
+
     /**
      * Populates empty instance from the contents of a namelist file.
      * Throws a RuntimeException if size of instance is not zero
@@ -189,13 +211,20 @@ public class F90NamelistImpl extends ArrayList<F90NamelistGroup> implements
      */
     protected void read () throws IOException {
 
+        try ( LineNumberReader reader =
+                new LineNumberReader ( new FileReader(this.nlFile) ) ) {
+            this.read(reader);
+        }
+    }
+
+    private void read ( LineNumberReader reader ) throws IOException {
+
         if ( this.size() > 0 )
             throw new RuntimeException("The read method should only be called on an empty instance");
 
         this.reading = false;
 
-        try ( LineNumberReader reader =
-                new LineNumberReader ( new FileReader(this.nlFile) ) ) {
+        try {
 
             this.reading = true;
 
@@ -298,18 +327,49 @@ public class F90NamelistImpl extends ArrayList<F90NamelistGroup> implements
     @Override
     public void write ( File nlFile ) throws IOException {
 
-        PrintWriter file = new PrintWriter(nlFile);
+        try ( Writer file = new FileWriter(nlFile) ) {
+            this.write(file);
+        }
+    }
+
+    /**
+     * Writes contents of instance to a writer in namelist format. The writer
+     * is flushed, but not closed.
+     * 
+     * @param writer destination for namelist data
+     * @throws IOException if writing fails, or variable type information
+     * cannot be loaded from property files named after the contained namelist groups
+     */
+    @Override
+    public void write ( Writer writer ) throws IOException {
 
-        for ( F90NamelistGroup group: this ) {
-            file.println("&" + group.getGroupName() );
-            group.write(file, this.valueSeparator);
-            file.println('/');   
+        PrintWriter out = new PrintWriter(writer);
+
+        for ( F90NamelistGroup member: this ) {
+            F90NamelistGroup group = this.prepareForWrite(member);
+            out.println("&" + group.getGroupName() );
+            group.write(out, this.valueSeparator);
+            out.println('/');   
         }
 
-        file.close();
+        // PrintWriter swallows errors, so they have to be looked for
+        if ( out.checkError() )
+            throw new IOException("Error writing namelist data");
     }
 
 
+    /**
+     * Called by {@link #write(Writer)} for each group in turn, so that subclasses
+     * can write out values that are only worked out at that point. This
+     * implementation returns {@code group} unchanged.
+     * 
+     * @param group group about to be written
+     * @return group to write in its place, which should have the same name
+     */
+    protected F90NamelistGroup prepareForWrite ( F90NamelistGroup group ) {
+        return group;
+    }
+
     private String nextSignificantLine(LineNumberReader reader) throws IOException {
 
         String retval = reader.readLine();
@@ -327,7 +387,7 @@ public class F90NamelistImpl extends ArrayList<F90NamelistGroup> implements
 
     private String errorMessage ( String msg ) {
         if ( this.reading ) {
-            return  "\n  " + this.nlFile.getAbsolutePath() + 
+            return  "\n  " + ( this.nlFile == null ? "(input)" : this.nlFile.getAbsolutePath() ) + 
                     ": bad namelist data at line " + 
                     String.valueOf( this.curLineNumber ) + ". " + msg ;
         }
@@ -398,6 +458,14 @@ public class F90NamelistImpl extends ArrayList<F90NamelistGroup> implements
         this.valueSeparator = commaSeparated ? ", " : " ";
     }
 
+    /**
+     * @return {@code true} if values are separated by commas on output
+     * @see #setCommaSeparator(boolean)
+     */
+    public boolean isCommaSeparated() {
+        return this.valueSeparator.indexOf(',') >= 0;
+    }
+
     @Override
     public boolean add(F90NamelistGroup e) {
         super.add(e);
@@ -11,11 +11,15 @@ package co.gphl.common.net;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Function;
 
 /**
  * Common superclass for URLs that are used to specify a beamline service to be
@@ -41,7 +45,7 @@ import java.util.Map;
 public abstract class ParameterisedUrl {
 
     protected URI uri;
-    private Map<String, List<String>> params;
+    private QueryParams params;
     
     /**
      * Service URL constructor.
@@ -67,43 +71,34 @@ public abstract class ParameterisedUrl {
             this.initParams(this.uri.getRawQuery());
     }
 
-    protected void initParams(String rawQuery) {
-        // This handling of queries is inspired by http://stackoverflow.com/a/13592567/1866402
-        
-        this.params = new HashMap<String, List<String>>();
-        
-        if ( rawQuery != null && rawQuery.length() > 0 ) {
-
-            try {
-
-                for ( String q: rawQuery.split("&") ) {
-
-                    String[] p = q.split("=", 2);
-                    
-                    /* The Javadoc for URLDecoder.decode states that encodings
-                     * other than UTF-8 go against WWWC recommendations and
-                     * may introduce incompatibilities */
-                    String name = URLDecoder.decode(p[0], "UTF-8");
-                    List<String> vals = this.params.get(name);
-
-                    if ( vals == null ) {
-                        vals = new ArrayList<String>();
-                        this.params.put(name, vals);
-                    }
-
-                    if ( p.length == 1 )
-                        vals.add(null);
-                    else 
-                        vals.add( URLDecoder.decode(p[1], "UTF-8") );
+    /**
+     * Constructor for a service URL put together with a {@link Builder}. The
+     * parameters are taken from the builder as they are, so the query is
+     * neither scanned nor decoded.
+     * 
+     * @param builder
+     * @param scheme
+     * @throws URISyntaxException if the parts given to the builder do not make a valid URI
+     */
+    protected ParameterisedUrl(Builder builder, String scheme) throws URISyntaxException {
 
-                }
+        if ( ! builder.scheme.toLowerCase().equals(scheme) )
+            throw new IllegalArgumentException("Expecting URI with scheme " 
+                    + scheme + ", got " + builder.scheme );
 
-            }
-            catch ( UnsupportedEncodingException e ) {
-                throw new RuntimeException("Serious configuration problem: UTF-8 should be supported by any JVM!", e);
-            }
+        this.uri = builder.toUri();
+        this.params = builder.toParams();
+    }
 
-        }
+    /**
+     * Sets up the parameters from the query. The query is only scanned here:
+     * parameters are decoded when they are asked for.
+     * 
+     * @param rawQuery raw (%-encoded) query, or {@code null}
+     * @throws IllegalArgumentException if the query contains a malformed %-escape
+     */
+    protected void initParams(String rawQuery) {
+        this.params = QueryParams.of(rawQuery);
     }
     
     /**
@@ -131,16 +126,15 @@ public abstract class ParameterisedUrl {
      */
     public String getNamedParam( String paramName, boolean required ) {
 
-        List<String> vals = this.params == null ? null : this.params.get(paramName);
+        int i = this.params == null ? -1 : this.params.indexOf(paramName, 0);
 
         String retval = null;
-        if ( vals != null ) {
-            if ( vals.size() > 1 )
+        if ( i >= 0 ) {
+            if ( this.params.indexOf(paramName, i + 1) >= 0 )
                 throw new IllegalStateException(
                     String.format("%d values defined for parameter '%s': we can only handle 1",
-                        vals.size(), paramName) );
-            else if ( vals.size() == 1 )
-                retval = vals.get(0);
+                        this.params.count(paramName), paramName) );
+            retval = this.params.value(i);
         }
 
         if ( required && ( retval == null || retval.length() == 0 ) )
@@ -151,6 +145,86 @@ public abstract class ParameterisedUrl {
         return retval;
 
     }
+
+    /**
+     * Return all the values assigned to a parameter in the URI's query string, in
+     * the order in which they appear. A parameter given without {@code =} has a
+     * {@code null} value.
+     * 
+     * @param paramName name of parameter
+     * @return values of {@code paramName}, which may be empty but is never null,
+     * and cannot be modified
+     */
+    public List<String> getAll( String paramName ) {
+        if ( this.params == null )
+            return Collections.emptyList();
+        return this.params.getAll(paramName);
+    }
+
+    /**
+     * Return the value of a parameter as an integer. Values are parsed the first
+     * time they are asked for, and remembered.
+     * 
+     * @param paramName name of parameter
+     * @param required as for {@link #getNamedParam(String, boolean)}
+     * @return value of {@code paramName}, or null if {@code required == false}
+     * and no value has been assigned to the parameter.
+     * 
+     * @throws IllegalStateException as for {@link #getNamedParam(String, boolean)},
+     * or if the value is not an integer
+     */
+    public Integer getInt( String paramName, boolean required ) {
+        return this.getConverted(paramName, required, Integer.class, Integer::valueOf, "an integer");
+    }
+
+    /**
+     * Return the value of a parameter as a double. Values are parsed the first
+     * time they are asked for, and remembered.
+     * 
+     * @param paramName name of parameter
+     * @param required as for {@link #getNamedParam(String, boolean)}
+     * @return value of {@code paramName}, or null if {@code required == false}
+     * and no value has been assigned to the parameter.
+     * 
+     * @throws IllegalStateException as for {@link #getNamedParam(String, boolean)},
+     * or if the value is not a number
+     */
+    public Double getDouble( String paramName, boolean required ) {
+        return this.getConverted(paramName, required, Double.class, Double::valueOf, "a number");
+    }
+
+    /**
+     * Return the value of a parameter as a file system path. Values are converted
+     * the first time they are asked for, and remembered.
+     * 
+     * @param paramName name of parameter
+     * @param required as for {@link #getNamedParam(String, boolean)}
+     * @return value of {@code paramName}, or null if {@code required == false}
+     * and no value has been assigned to the parameter.
+     * 
+     * @throws IllegalStateException as for {@link #getNamedParam(String, boolean)},
+     * or if the value is not a valid path
+     */
+    public Path getPath( String paramName, boolean required ) {
+        return this.getConverted(paramName, required, Path.class, Paths::get, "a valid path");
+    }
+
+    private <T> T getConverted( String paramName, boolean required, Class<T> type,
+            Function<String, T> convert, String description ) {
+
+        String value = this.getNamedParam(paramName, required);
+        if ( value == null || value.length() == 0 )
+            return null;
+
+        try {
+            return this.params.convert(type, paramName, value, convert);
+        }
+        catch ( NumberFormatException | InvalidPathException e ) {
+            throw new IllegalStateException(
+                String.format("Value '%s' of parameter '%s' is not %s. URI is: %s",
+                    value, paramName, description, this.uri.toString()), e);
+        }
+    }
     
     /** 
      * Delegate to {@link URI#toString()}
@@ -170,5 +244,112 @@ public abstract class ParameterisedUrl {
     public String getRawSchemeSpecificPart() {
         return this.uri.getRawSchemeSpecificPart();
     }
+
+    /**
+     * Puts together a service URL from its parts, for passing to the
+     * {@link ParameterisedUrl#ParameterisedUrl(Builder, String) constructor}
+     * of a subclass that accepts one. Parameter names and values are given
+     * unencoded, and are encoded here:
+     * 
+     * <pre>
+     *    MyServiceUrl url = new MyServiceUrl(
+     *        new ParameterisedUrl.Builder("myservice", "localhost:8080", "/session")
+     *            .param("id", 42).param("dir", "/tmp/my data") );
+     * </pre>
+     */
+    public static class Builder {
+
+        private final String scheme, authority, path;
+        private final StringBuilder query = new StringBuilder();
+        private final List<String> names = new ArrayList<String>();
+        private final List<String> values = new ArrayList<String>();
+        private int[] bounds = new int[16];
+
+        /**
+         * @param scheme URI scheme
+         * @param authority raw (%-encoded) authority, or {@code null} for none
+         * @param path raw (%-encoded) path, which must be absolute if there are parameters
+         */
+        public Builder(String scheme, String authority, String path) {
+            this.scheme = scheme;
+            this.authority = authority;
+            this.path = path == null ? "" : path;
+        }
+
+        /**
+         * Adds a parameter to the query. A parameter may be added more than once.
+         * 
+         * @param name name of parameter
+         * @param value value of parameter, converted with {@link String#valueOf(Object)},
+         * or {@code null} to give the parameter without {@code =}
+         * @return this builder
+         */
+        public Builder param(String name, Object value) {
+
+            int n = this.names.size();
+            if ( n > 0 )
+                this.query.append('&');
+            if ( 4 * n + 4 > this.bounds.length )
+                this.bounds = Arrays.copyOf(this.bounds, 2 * this.bounds.length);
+
+            String strValue = value == null ? null : String.valueOf(value);
+            this.bounds[4 * n] = this.query.length();
+            this.query.append(Builder.encode(name));
+            this.bounds[4 * n + 1] = this.query.length();
+            if ( strValue == null )
+                this.bounds[4 * n + 2] = -1;
+            else {
+                this.query.append('=');
+                this.bounds[4 * n + 2] = this.query.length();
+                this.query.append(Builder.encode(strValue));
+            }
+            this.bounds[4 * n + 3] = this.query.length();
+
+            this.names.add(name);
+            this.values.add(strValue);
+            return this;
+        }
+
+        /**
+         * @return URI made from the parts given so far
+         * @throws URISyntaxException if the parts do not make a valid URI
+         * @throws IllegalArgumentException if there are parameters but the path is
+         * not absolute
+         */
+        public URI toUri() throws URISyntaxException {
+
+            StringBuilder sb = new StringBuilder(this.scheme.length() + this.path.length()
+                    + this.query.length() + 32);
+            sb.append(this.scheme).append(':');
+            if ( this.authority != null )
+                sb.append("//").append(this.authority);
+            sb.append(this.path);
+            if ( this.names.size() > 0 )
+                sb.append('?').append(this.query);
+
+            URI retval = new URI(sb.toString());
+            if ( retval.isOpaque() && this.names.size() > 0 )
+                throw new IllegalArgumentException("Cannot give parameters with relative path '"
+                        + this.path + "' and no authority");
+            return retval;
+        }
+
+        private QueryParams toParams() {
+            if ( this.names.isEmpty() )
+                return QueryParams.of(null);
+            int n = this.names.size();
+            return new QueryParams(this.query.toString(), Arrays.copyOf(this.bounds, 4 * n),
+                    this.names.toArray(new String[n]), this.values.toArray(new String[n]));
+        }
+
+        private static String encode(String s) {
+            try {
+                return URLEncoder.encode(s, "UTF-8");
+            }
+            catch ( UnsupportedEncodingException e ) {
+                throw new RuntimeException("Serious configuration problem: UTF-8 should be supported by any JVM!", e);
+            }
+        }
+    }
     
 }
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.common.net;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Parameters of a raw (%-encoded) URI query string. The query is scanned once, to
+ * record where each name and value starts and ends, and names and values are only
+ * decoded when they are asked for. Instances are immutable, and are shared between
+ * URIs with the same query: see {@link #of(String)}.
+ *
+ * <p>The parameters are those that splitting the query on {@code &} and then on
+ * the first {@code =} would give. A parameter without {@code =} has a {@code null} value.</p>
+ */
+final class QueryParams {
+
+    static final int MAX_CACHED = 256;
+
+    private static final QueryParams EMPTY = new QueryParams("");
+    private static final Map<String, QueryParams> cache = new ConcurrentHashMap<>();
+
+    private final String query;
+
+    // For parameter i: name from bounds[4i] to bounds[4i+1], value from
+    // bounds[4i+2] to bounds[4i+3], with bounds[4i+2] == -1 if there is no value
+    private final int[] bounds;
+    private final int size;
+
+    // Decoded names and values, filled in as they are needed. Races are harmless:
+    // every thread decodes the same string, and Strings are safe to publish like this.
+    private final String[] names, values;
+
+    // Values converted to other types, keyed by type and parameter name
+    private final Map<String, Object> converted = new ConcurrentHashMap<>();
+
+    private QueryParams(String query) {
+
+        this.query = query;
+
+        int len = query.length();
+        int[] bounds = new int[16];
+        int n = 0, lastNonEmpty = 0, start = 0;
+
+        while ( start <= len && len > 0 ) {
+            int end = query.indexOf('&', start);
+            if ( end < 0 )
+                end = len;
+
+            int eq = -1;
+            for ( int i = start; i < end; i++ ) {
+                char c = query.charAt(i);
+                if ( c == '=' && eq < 0 )
+                    eq = i;
+                else if ( c == '%' )
+                    QueryParams.checkEscape(query, i, end);
+            }
+
+            if ( 4 * n + 4 > bounds.length )
+                bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+            bounds[4 * n] = start;
+            bounds[4 * n + 1] = eq < 0 ? end : eq;
+            bounds[4 * n + 2] = eq < 0 ? -1 : eq + 1;
+            bounds[4 * n + 3] = end;
+            n++;
+            // Like String.split, drop empty parameters at the end
+            if ( end > start )
+                lastNonEmpty = n;
+
+            start = end + 1;
+        }
+
+        this.size = lastNonEmpty;
+        this.bounds = bounds;
+        this.names = new String[this.size];
+        this.values = new String[this.size];
+    }
+
+    /**
+     * Creates parameters whose names and values are already known in decoded form.
+     *
+     * @param query raw query
+     * @param bounds positions of the names and values in {@code query}, as recorded
+     * by the scanning constructor
+     * @param names decoded names
+     * @param values decoded values, with {@code null} for a parameter without {@code =}
+     */
+    QueryParams(String query, int[] bounds, String[] names, String[] values) {
+        this.query = query;
+        this.bounds = bounds;
+        this.size = names.length;
+        this.names = names;
+        this.values = values;
+    }
+
+    /**
+     * Returns the parameters of a raw query, taking them from the cache if the same
+     * query has been seen before.
+     *
+     * @param rawQuery raw query, or {@code null}
+     * @return parameters of {@code rawQuery}
+     * @throws IllegalArgumentException if {@code rawQuery} contains a malformed %-escape
+     */
+    static QueryParams of(String rawQuery) {
+
+        if ( rawQuery == null || rawQuery.isEmpty() )
+            return EMPTY;
+
+        QueryParams retval = cache.get(rawQuery);
+        if ( retval == null ) {
+            retval = new QueryParams(rawQuery);
+            // Simply stop caching when full: service URLs come from a small set
+            if ( cache.size() < MAX_CACHED ) {
+                QueryParams prevVal = cache.putIfAbsent(rawQuery, retval);
+                if ( prevVal != null )
+                    retval = prevVal;
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * @return number of parameters, counting repeats
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @param name decoded parameter name
+     * @param from index of the first parameter to look at
+     * @return index of the next parameter called {@code name}, or {@code -1}
+     */
+    int indexOf(String name, int from) {
+        for ( int i = from; i < this.size; i++ ) {
+            if ( this.nameMatches(i, name) )
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param name decoded parameter name
+     * @return number of parameters called {@code name}
+     */
+    int count(String name) {
+        int retval = 0;
+        for ( int i = this.indexOf(name, 0); i >= 0; i = this.indexOf(name, i + 1) )
+            retval++;
+        return retval;
+    }
+
+    /**
+     * @param i index of a parameter
+     * @return decoded name of the parameter
+     */
+    String name(int i) {
+        String retval = this.names[i];
+        if ( retval == null )
+            this.names[i] = retval = this.decode(this.bounds[4 * i], this.bounds[4 * i + 1]);
+        return retval;
+    }
+
+    /**
+     * @param i index of a parameter
+     * @return decoded value of the parameter, or {@code null} if it has none
+     */
+    String value(int i) {
+        int start = this.bounds[4 * i + 2];
+        if ( start < 0 )
+            return null;
+        String retval = this.values[i];
+        if ( retval == null )
+            this.values[i] = retval = this.decode(start, this.bounds[4 * i + 3]);
+        return retval;
+    }
+
+    /**
+     * @param name decoded parameter name
+     * @return decoded values of all the parameters called {@code name}, in order,
+     * in a list that cannot be modified
+     */
+    @SuppressWarnings("unchecked")
+    List<String> getAll(String name) {
+        return (List<String>) this.converted.computeIfAbsent("\0" + name, k -> {
+            List<String> retval = new ArrayList<String>(1);
+            for ( int i = this.indexOf(name, 0); i >= 0; i = this.indexOf(name, i + 1) )
+                retval.add(this.value(i));
+            return Collections.unmodifiableList(retval);
+        } );
+    }
+
+    /**
+     * Converts the value of a parameter, reusing the result of an earlier conversion
+     * of the same parameter to the same type.
+     *
+     * @param type type to convert to, which with {@code name} identifies the result
+     * @param name decoded parameter name
+     * @param value decoded value of the parameter
+     * @param convert conversion, which must not return {@code null}
+     * @return converted value
+     */
+    <T> T convert(Class<T> type, String name, String value, Function<String, T> convert) {
+        return type.cast(this.converted.computeIfAbsent(type.getName() + '\0' + name,
+                k -> convert.apply(value)));
+    }
+
+    private boolean nameMatches(int i, String name) {
+        String decoded = this.names[i];
+        if ( decoded != null )
+            return decoded.equals(name);
+
+        int start = this.bounds[4 * i], end = this.bounds[4 * i + 1];
+        if ( ! QueryParams.needsDecoding(this.query, start, end) )
+            return end - start == name.length() && this.query.regionMatches(start, name, 0, name.length());
+        return this.name(i).equals(name);
+    }
+
+    private String decode(int start, int end) {
+
+        String raw = this.query.substring(start, end);
+        if ( ! QueryParams.needsDecoding(this.query, start, end) )
+            return raw;
+
+        try {
+            /* The Javadoc for URLDecoder.decode states that encodings
+             * other than UTF-8 go against WWWC recommendations and
+             * may introduce incompatibilities */
+            return URLDecoder.decode(raw, "UTF-8");
+        }
+        catch ( UnsupportedEncodingException e ) {
+            throw new RuntimeException("Serious configuration problem: UTF-8 should be supported by any JVM!", e);
+        }
+    }
+
+    private static boolean needsDecoding(String s, int start, int end) {
+        for ( int i = start; i < end; i++ ) {
+            char c = s.charAt(i);
+            if ( c == '%' || c == '+' )
+                return true;
+        }
+        return false;
+    }
+
+    // Checks the %-escape at pos as URLDecoder would, so that a malformed
+    // query is rejected straight away rather than when a parameter is read
+    private static void checkEscape(String s, int pos, int end) {
+        if ( pos + 2 >= end || Character.digit(s.charAt(pos + 1), 16) < 0
+                || Character.digit(s.charAt(pos + 2), 16) < 0 )
+            throw new IllegalArgumentException("Malformed escape at position " + pos
+                    + " of URI query '" + s + "'");
+    }
+
+}
@@ -97,6 +97,17 @@ public interface ApplicationSpec extends PropertyDefinition {
         return State.getState(this).getLicencingDir();
     }
     
+    /**
+     * Discards the cached result of checking the application and its licencing
+     * directory on the file system, so that the checks are made again the next time
+     * the application is used: for example, after it has been redeployed.
+     * 
+     * @see ApplicationSpecWatcher
+     */
+    default void invalidate() {
+        State.getState(this).invalidate();
+    }
+    
     /**
      * Get the logical name of the application. This name is used in the names of
      * other {@link PropertyDefinition properties} that are used to control the
@@ -118,9 +129,18 @@ public interface ApplicationSpec extends PropertyDefinition {
         private final PropertyDefinition defaultLicDirProperty;
         private final String appName;
         
-        private Boolean valid = null;
-        private Path path = null;
-        private Path licPath = null;
+        // Outcome of validation, cached by PropertyDefinition.State.getValidation
+        private static final class Setup {
+            
+            private final boolean valid;
+            private final Path path, licPath;
+            
+            private Setup(boolean valid, Path path, Path licPath) {
+                this.valid = valid;
+                this.path = path;
+                this.licPath = licPath;
+            }
+        }
 
         public static void register(ApplicationSpec spec, String namespace, String basename,
                 String defaultValue, PropertyDefinition binDirProperty, PropertyDefinition licDirProperty) {
@@ -164,16 +184,17 @@ public interface ApplicationSpec extends PropertyDefinition {
         
         private Path getLicencingDir() {
 
-            // Side-effect here: not brilliant, but this facility is really
+            // Check validity: not brilliant, but this facility is really
             // intended for development use, not deployment/production.
             this.getPath();
             
-            return this.licPath;
+            return this.getSetup(false).licPath;
         }
         
         private Path getPath() {
             
-            if ( ! this.isValid(false) ) {
+            Setup setup = this.getSetup(false);
+            if ( ! setup.valid ) {
                 logger.severe(String.format("Property %s has failed validation: "
                         + "cannot use application.\n"
                         + "See previous error message(s) from this logger", this.getPropName()) );
@@ -181,23 +202,39 @@ public interface ApplicationSpec extends PropertyDefinition {
                 throw new RuntimeException("Invalid specification for application " + this.appName);
             }
             
-            return this.path;
+            return setup.path;
         }
         
         @Override
         protected boolean isValid(boolean required) {
-            if ( this.valid == null )
-                this.setup(required);
-            
-            if ( this.valid == null )
-                throw new IllegalStateException("BUG: setup() has been called, but this.valid is still null");
-            
-            return this.valid;
+            return this.getSetup(required).valid;
+        }
+        
+        private Setup getSetup(boolean required) {
+            return (Setup) this.getValidation( () -> this.setup(required) );
+        }
+        
+        /**
+         * @return path of the application as set, even if it is not valid, or
+         * {@code null} if the application is disabled
+         */
+        Path getConfiguredPath() {
+            return this.getSetup(false).path;
+        }
+        
+        /**
+         * @return licencing directory as set, even if it is not valid, or {@code null}
+         */
+        Path getConfiguredLicencingDir() {
+            return this.getSetup(false).licPath;
         }
 
         
-        private void setup(boolean required) {
+        private Setup setup(boolean required) {
 
+            Boolean valid = null;
+            Path path = null, licPath = null;
+            
             String value = this.getUnvalidatedPropValue();
             
             // If the property has been defined with no argument (something like
@@ -205,27 +242,26 @@ public interface ApplicationSpec extends PropertyDefinition {
             // of the application by assigning an empty string.
             if ( value == null || value.isEmpty() ) {
                 if ( required ) {
-                    this.valid = false;
+                    valid = false;
                     logger.severe(String.format("Application %s has been disabled, but it is required in this context. "
                             + "Check the setting of property %s",
                             this.appName, this.getPropName()));
                 }
                 else
-                    this.valid = true;
-                return;
+                    valid = true;
+                return new Setup(valid, path, licPath);
             }
             
-            // We set this.path from the start, so that if we get here from getPath() we can 
+            // We set the path from the start, so that if we get here from getPath() we can 
             // report as much of the path as was set up if validation fails.
             // Cast to supertype to avoid UnsupportedOperationException above
-            this.path = Paths.get(value);
+            path = Paths.get(value);
 
-            if ( !this.path.isAbsolute() ) {
+            if ( !path.isAbsolute() ) {
                 if ( ! this.binDirProperty.isValid(true) ) {
                     logger.severe(String.format("Directory property %s required here but invalid: property %s is also invalid",
                             this.binDirProperty.getPropName(), this.getPropName()) );
-                    this.valid = false;
-                    return;
+                    return new Setup(false, path, licPath);
                 }
                 String dirStr = this.binDirProperty.getPropValue();
                 Path dir = null;
@@ -238,53 +274,54 @@ public interface ApplicationSpec extends PropertyDefinition {
                             this.getPropName(), this.binDirProperty.getPropName(), this.defaultValue));
                     logger.info( String.format("The values set are '%s' and '%s' respectively",
                             Objects.toString(value, "<null>"), Objects.toString(dirStr, "<null>") ) );
-                    this.valid = false;
+                    valid = false;
                 }
                 
                 if ( dir != null )
-                    this.path = dir.resolve(this.path);
+                    path = dir.resolve(path);
                 
             }
             
             // If the path seems valid so far, check for existence/executability
-            if ( this.valid == null ) {
-                this.valid = Files.isExecutable(this.path);
-                if ( ! this.valid )
+            if ( valid == null ) {
+                valid = Files.isExecutable(path);
+                if ( ! valid )
                     logger.severe( String.format("File %s defined by property %s is not executable",
-                            this.path, this.getPropName()));
+                            path, this.getPropName()));
             }
             
             // Finally, check that the licencing directory, if applicable, is valid
-            if ( this.valid ) {
+            if ( valid ) {
                 String licPropName = this.property.getPropName().replaceFirst(BINSUFFIX + "$", BDGSUFFIX);
                 String licPropValue = PropertyDefinition.State.queryProperties(licPropName);
                 
                 if ( licPropValue != null && !licPropValue.isEmpty() )
-                    this.licPath = Paths.get(licPropValue);
+                    licPath = Paths.get(licPropValue);
                 else if ( this.defaultLicDirProperty != null ) {
                     String licPathStr = Objects.toString(this.defaultLicDirProperty.getPropValue(), "");
                     if ( !licPathStr.isEmpty() ) {
-                        this.licPath = Paths.get(licPathStr);
+                        licPath = Paths.get(licPathStr);
                         licPropName = this.defaultLicDirProperty.getPropName();
                     }
                 }
                 
-                if ( this.licPath != null ) {
+                if ( licPath != null ) {
                     Path licFilePath = licPath.resolve(".licence");
-                    this.valid = this.licPath.isAbsolute() && Files.isDirectory(this.licPath) && 
-                            Files.isReadable(this.licPath) && Files.isRegularFile(licFilePath) &&
+                    valid = licPath.isAbsolute() && Files.isDirectory(licPath) && 
+                            Files.isReadable(licPath) && Files.isRegularFile(licFilePath) &&
                             Files.isReadable(licFilePath);
                     
-                    if ( ! this.valid )
+                    if ( ! valid )
                         logger.severe( String.format("Validation of licencing directory '%s' specified by "
                                 + "property %s failed:\n"
                                 + "it must specify an absolute path to a readable directory that contains "
                                 + "a readable file called '.licence'", 
-                                this.licPath.toString(), licPropName) );
+                                licPath.toString(), licPropName) );
                 }
                 
             }
             
+            return new Setup(valid, path, licPath);
         }
     }
 }
@@ -0,0 +1,182 @@
+/**
+ * Copyright © 2026 by Global Phasing Ltd. All rights reserved
+ *
+ * This software is proprietary to and embodies the confidential
+ * technology of Global Phasing Limited (GPhL).
+ *
+ * Any possession or use (including but not limited to duplication, reproduction
+ * and dissemination) of this software (in either source or compiled form) is
+ * forbidden except where an agreement with GPhL that permits such possession or
+ * use is in force.
+ *
+ */
+
+package co.gphl.common.properties;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Watches the executables and licencing directories of {@link ApplicationSpec}s,
+ * and {@link ApplicationSpec#invalidate() invalidates} the cached result of checking
+ * them when they change. A long-running service can then pick up applications that
+ * have been redeployed, without checking the file system every time an application
+ * is used.
+ *
+ * <p>What is watched is worked out from the global properties (see
+ * {@link PropertyDefinition.State#setProperties(java.util.Properties)}) when
+ * {@link #watch(ApplicationSpec)} is called. On a change, the global validation
+ * result is invalidated, along with the results shared between
+ * {@link PropertyContext}s with the same property values. A context that is
+ * already open keeps any result it has already used until it is closed. Events
+ * are handled on a daemon thread until the watcher is closed.</p>
+ */
+public class ApplicationSpecWatcher implements AutoCloseable {
+
+    private static Logger logger = Logger.getLogger(ApplicationSpecWatcher.class.getName());
+
+    private final WatchService watchService;
+    private final Thread thread;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // What to invalidate for each watched directory
+    private final Map<WatchKey, List<Target>> targets = new HashMap<>();
+
+    /**
+     * Creates a watcher, and starts the thread that handles its events.
+     *
+     * @throws IOException if a {@link WatchService} cannot be made
+     */
+    public ApplicationSpecWatcher() throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.thread = new Thread(this::run, ApplicationSpecWatcher.class.getSimpleName());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Starts watching the executable of an application, and its licencing directory
+     * if it has one. If the application is not set to an absolute path, its
+     * cached state is invalidated only when it next is.
+     *
+     * @param spec application to watch
+     * @throws IOException if the directories cannot be watched
+     */
+    public void watch(ApplicationSpec spec) throws IOException {
+
+        ApplicationSpec.State state = ApplicationSpec.State.getState(spec);
+        Path[] paths = PropertyContext.with(PropertyDefinition.State.getGlobalProperties(),
+                () -> new Path[]{ state.getConfiguredPath(), state.getConfiguredLicencingDir() } );
+        Path path = paths[0], licPath = paths[1];
+
+        if ( path != null && path.isAbsolute() && path.getParent() != null )
+            this.register(path.getParent(), new Target(spec, path.getFileName()));
+        if ( licPath != null && licPath.isAbsolute() )
+            this.register(licPath, new Target(spec, null));
+    }
+
+    /**
+     * @return number of times that an application has been invalidated
+     */
+    public long getInvalidations() {
+        return this.invalidations.get();
+    }
+
+    /**
+     * Stops watching.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        this.watchService.close();
+        try {
+            this.thread.join(1000L);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void register(Path dir, Target target) throws IOException {
+        WatchKey key = dir.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.targets.computeIfAbsent(key, k -> new ArrayList<>()).add(target);
+    }
+
+    private synchronized List<Target> getTargets(WatchKey key) {
+        List<Target> retval = this.targets.get(key);
+        return retval == null ? new ArrayList<>() : new ArrayList<>(retval);
+    }
+
+    private synchronized void forget(WatchKey key) {
+        this.targets.remove(key);
+    }
+
+    private void run() {
+
+        try {
+            while ( true ) {
+                WatchKey key = this.watchService.take();
+                List<Target> keyTargets = this.getTargets(key);
+
+                for ( WatchEvent<?> event: key.pollEvents() ) {
+                    Object context = event.context();
+                    for ( Target target: keyTargets ) {
+                        // Anything could have happened if events were lost
+                        if ( event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || target.fileName == null || target.fileName.equals(context) )
+                            this.invalidate(target.spec, key.watchable());
+                    }
+                }
+
+                if ( ! key.reset() ) {
+                    // The directory has gone: invalidate, so that its absence is noticed
+                    logger.warning("No longer able to watch " + key.watchable());
+                    for ( Target target: keyTargets )
+                        this.invalidate(target.spec, key.watchable());
+                    this.forget(key);
+                }
+            }
+        }
+        catch (ClosedWatchServiceException e) {
+            // Closed: nothing more to do
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void invalidate(ApplicationSpec spec, Object dir) {
+        logger.info(String.format("Change in %s: checking %s again when it is next used",
+                dir, spec.getPropName()));
+        spec.invalidate();
+        this.invalidations.incrementAndGet();
+    }
+
+    // An application to invalidate, when a file in a watched directory
+    // with the given name changes (any file if fileName is null)
+    private static final class Target {
+
+        private final ApplicationSpec spec;
+        private final Path fileName;
+
+        private Target(ApplicationSpec spec, Path fileName) {
+            this.spec = spec;
+            this.fileName = fileName;
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright © 2026 by Global Phasing Ltd. All rights reserved
+ *
+ * This software is proprietary to and embodies the confidential
+ * technology of Global Phasing Limited (GPhL).
+ *
+ * Any possession or use (including but not limited to duplication, reproduction
+ * and dissemination) of this software (in either source or compiled form) is
+ * forbidden except where an agreement with GPhL that permits such possession or
+ * use is in force.
+ *
+ */
+
+package co.gphl.common.properties;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Scope within which {@link PropertyDefinition}s take their values from a given
+ * {@link Properties} object on the current thread, rather than from the properties
+ * set with {@link PropertyDefinition.State#setProperties(Properties)} or the system
+ * properties. This lets code running concurrently on different threads use different
+ * properties without changing global state. Scopes may be nested:
+ *
+ * <pre>
+ *    Path simcal = PropertyContext.with(props, () -&gt; EmulatorApplicationSpec.SIMCAL.getPath());
+ *    PropertyContext.run(props, () -&gt; {
+ *        ...
+ *    } );
+ * </pre>
+ *
+ * <p>{@link #with(Properties, Supplier)} and {@link #run(Properties, Runnable)} open
+ * and close the scope. Code that uses {@link #open(Properties)} directly must close it
+ * in a {@code finally} block.</p>
+ *
+ * <p>The results of validating properties are cached in the scope, and are reused by
+ * later scopes whose properties have the same values, until the property is
+ * {@link PropertyDefinition.State#invalidate() invalidated}. A scope must be closed on
+ * the thread that opened it, and scopes must be closed in the reverse order to that in
+ * which they were opened.</p>
+ */
+public final class PropertyContext implements AutoCloseable {
+
+    private static final ThreadLocal<PropertyContext> current = new ThreadLocal<>();
+
+    private final Properties properties;
+    private final PropertyContext previous;
+    private final Map<Object, Object> validation = new ConcurrentHashMap<>();
+    private volatile Values values = null;
+    private boolean closed = false;
+
+    private PropertyContext(Properties properties, PropertyContext previous) {
+        this.properties = properties;
+        this.previous = previous;
+    }
+
+    /**
+     * Opens a scope in which properties are taken from {@code properties} on the
+     * current thread.
+     *
+     * @param properties properties to use, or {@code null} to carry on using the
+     * properties in force when this method is called
+     * @return the new scope, to be closed when it is finished with
+     */
+    public static PropertyContext open(Properties properties) {
+        PropertyContext previous = current.get();
+        if ( properties == null )
+            return new PropertyContext(null, previous);
+        PropertyContext context = new PropertyContext(properties, previous);
+        current.set(context);
+        return context;
+    }
+
+    /**
+     * Calls {@code action} in a scope in which properties are taken from {@code properties}.
+     *
+     * @param properties properties to use, or {@code null} to carry on using the
+     * properties in force when this method is called
+     * @param action action to carry out
+     * @return result of {@code action}
+     */
+    public static <T> T with(Properties properties, Supplier<T> action) {
+        PropertyContext context = PropertyContext.open(properties);
+        try {
+            return action.get();
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Runs {@code action} in a scope in which properties are taken from {@code properties}.
+     *
+     * @param properties properties to use, or {@code null} to carry on using the
+     * properties in force when this method is called
+     * @param action action to carry out
+     */
+    public static void run(Properties properties, Runnable action) {
+        PropertyContext context = PropertyContext.open(properties);
+        try {
+            action.run();
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    /**
+     * @return properties that {@link PropertyDefinition}s take their values from on
+     * the current thread
+     */
+    public static Properties getProperties() {
+        PropertyContext context = current.get();
+        return context != null ? context.properties : PropertyDefinition.State.getGlobalProperties();
+    }
+
+    /**
+     * @return innermost open scope on the current thread, or {@code null} if there is none
+     */
+    static PropertyContext current() {
+        return current.get();
+    }
+
+    /**
+     * @return values of the properties of this scope as they are now, including
+     * defaults, worked out the first time they are asked for
+     */
+    Values getValues() {
+        Values values = this.values;
+        if ( values == null )
+            this.values = values = new Values(this.properties);
+        return values;
+    }
+
+    /**
+     * @param key
+     * @return result of validation cached in this scope for {@code key}, or {@code null}
+     */
+    Object getValidation(Object key) {
+        return this.validation.get(key);
+    }
+
+    /**
+     * Caches the result of a validation in this scope, unless one has already been
+     * cached for {@code key}.
+     *
+     * @param key
+     * @param value
+     * @return value now cached for {@code key}
+     */
+    Object putValidation(Object key, Object value) {
+        Object prevValue = this.validation.putIfAbsent(key, value);
+        return prevValue != null ? prevValue : value;
+    }
+
+    /**
+     * Discards the result of a validation cached in this scope.
+     *
+     * @param key
+     */
+    void removeValidation(Object key) {
+        this.validation.remove(key);
+    }
+
+    /**
+     * Closes this scope, so that properties are taken from wherever they were
+     * taken from before it was opened.
+     *
+     * @throws IllegalStateException if this is not the innermost open scope
+     * on the current thread
+     */
+    @Override
+    public void close() {
+        if ( this.closed || this.properties == null )
+            return;
+        if ( current.get() != this )
+            throw new IllegalStateException("BUG: property context closed out of order, or on the wrong thread");
+        this.closed = true;
+        if ( this.previous == null )
+            current.remove();
+        else
+            current.set(this.previous);
+    }
+
+    /**
+     * Copy of the values of a set of properties, for use as a key to results of
+     * validation that were worked out from them.
+     */
+    static final class Values {
+
+        private final Map<String, String> values;
+        private final int hash;
+
+        private Values(Properties properties) {
+            Map<String, String> values = new HashMap<>();
+            for ( String name: properties.stringPropertyNames() )
+                values.put(name, properties.getProperty(name));
+            this.values = values;
+            this.hash = values.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( this == obj )
+                return true;
+            if ( ! ( obj instanceof Values ) )
+                return false;
+            Values other = (Values) obj;
+            return this.hash == other.hash && this.values.equals(other.values);
+        }
+    }
+
+}
@@ -19,14 +19,16 @@ import java.nio.file.NoSuchFileException;
 import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -106,27 +108,55 @@ public interface PropertyDefinition {
             return null;
     }
     
+    /**
+     * Converts the value returned by {@link #getPropValue()} to a list of numbers. The
+     * list is made once for each value assigned to the property, and then reused.
+     * 
+     * @return arguments of the property value as numbers, in a list that cannot be
+     * modified, or {@code null} if the property has no value
+     * @throws NumberFormatException if an argument is not a number
+     * @see PropertyValues#asDoubles(String)
+     */
+    default List<Double> getPropDoubleListValue() {
+        return State.getState(this).getDoubleListValue();
+    }
+    
+    /**
+     * Converts the value returned by {@link #getPropValue()} to a path. The path
+     * is made once for each value assigned to the property, and then reused.
+     * 
+     * @return property value as a path, or {@code null} if it has no value or is empty
+     * @see PropertyValues#asPath(String)
+     */
+    default Path getPropPathValue() {
+        return State.getState(this).getPathValue();
+    }
+    
     default boolean validateArgs() {
         
         String val = Objects.requireNonNull(this.getPropValue(),
                 "BUG: this method should not be called for a property that hasn't been set");
         
-        String[] args = val.split("\\s+");
+        int nArgs = PropertyValues.countArgs(val);
         
-        return args.length >= this.getMinArgs() && args.length <= this.getMaxArgs();
+        return nArgs >= this.getMinArgs() && nArgs <= this.getMaxArgs();
     }
     
     static boolean asBoolean(String val) {
 
-        boolean retval = false;
-        if ( val != null ) {
-            if ( val.isEmpty() || "YyTt".indexOf(val.charAt(0)) > -1 )
-                retval = true;
-            else if ( "NnFf".indexOf(val.charAt(0) ) < 0 )
-                throw new UnsupportedOperationException("Conversion of String value '"
-                        + val + "' to boolean not supported");
+        if ( val == null )
+            return false;
+        if ( val.isEmpty() )
+            return true;
+        switch ( val.charAt(0) ) {
+        case 'Y': case 'y': case 'T': case 't':
+            return true;
+        case 'N': case 'n': case 'F': case 'f':
+            return false;
+        default:
+            throw new UnsupportedOperationException("Conversion of String value '"
+                    + val + "' to boolean not supported");
         }
-        return retval;
     }
 
     static boolean checkDir(String val) {
@@ -160,11 +190,15 @@ public interface PropertyDefinition {
         
         private static Logger logger = Logger.getLogger(State.class.getEnclosingClass().getName());
         
-        private static final Map<PropertyDefinition, State> map = new HashMap<>();
+        // Registrations may be made and looked up from any thread
+        private static final Map<PropertyDefinition, State> map = new ConcurrentHashMap<>();
         // Map internal namespace ids to their true prefixes
-        private static final Map<String, String> nsPrefixMap = new HashMap<>();
+        private static final Map<String, String> nsPrefixMap = new ConcurrentHashMap<>();
 
-        private static Properties properties = null;
+        // Number of sets of property values for which results of validation are kept
+        private static final int MAX_CONTEXT_VALIDATIONS = 8;
+
+        private static volatile Properties properties = null;
         
         protected final String basename;
         protected final String namespace;
@@ -181,11 +215,29 @@ public interface PropertyDefinition {
          * an exception: maybe in a future version.
          */
         private final Function<String, ?> validator;
-        private Boolean valid = null;
+        
+        // Result of validation against the global properties. Results for a
+        // PropertyContext are kept in the context, and here for the most recently
+        // used sets of property values, so that later contexts can reuse them.
+        private volatile Object validation = null;
+        private final Map<PropertyContext.Values, Object> contextValidation =
+                new LinkedHashMap<PropertyContext.Values, Object>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<PropertyContext.Values, Object> eldest) {
+                        return this.size() > MAX_CONTEXT_VALIDATIONS;
+                    }
+                };
+        
+        // Typed forms of the value, with the value that they were made from
+        private volatile Parsed<List<Double>> doubleListValue = null;
+        private volatile Parsed<Path> pathValue = null;
         
         /**
          * Specify the properties which will be used by future calls to
-         * {@link PropertyDefinition#getPropValue()}.
+         * {@link PropertyDefinition#getPropValue()}, on every thread that is
+         * not in a {@link PropertyContext}. Use a {@code PropertyContext} to
+         * set the properties for one thread only.
          * 
          * @param properties Properties to query, or {@code null}
          * to query {@link System#getProperties()}.
@@ -193,6 +245,14 @@ public interface PropertyDefinition {
         public static void setProperties(Properties properties) {
             State.properties = properties;
         }
+        
+        /**
+         * @return properties that are used outside any {@link PropertyContext}
+         */
+        protected static Properties getGlobalProperties() {
+            Properties props = State.properties;
+            return props != null ? props : System.getProperties();
+        }
 
         public static void register(PropertyDefinition property, String namespace,
                 String propName, String defaultValue, int nArgs,
@@ -275,6 +335,13 @@ public interface PropertyDefinition {
             return State.map.get(key);
         }
         
+        /**
+         * @return every property that has been registered so far
+         */
+        protected static Set<PropertyDefinition> getRegistered() {
+            return Collections.unmodifiableSet(State.map.keySet());
+        }
+        
         
         /**
          * Query statically-set properties with an arbitrary property name.
@@ -286,7 +353,7 @@ public interface PropertyDefinition {
          * 
          */
         @Deprecated protected static String queryProperties(String key) {
-            return State.properties == null ? System.getProperty(key) : State.properties.getProperty(key);
+            return PropertyContext.getProperties().getProperty(key);
         }
         
         protected String getPropName() {
@@ -296,12 +363,65 @@ public interface PropertyDefinition {
         }
         
         protected String getUnvalidatedPropValue() {
-            String val =  State.properties == null ?
-                    System.getProperty(this.getPropName(), this.defaultValue) :
-                        State.properties.getProperty(this.getPropName(), this.defaultValue);
+            String val = PropertyContext.getProperties().getProperty(this.getPropName(), this.defaultValue);
             return val == null ? null : val.trim();
         }
         
+        /**
+         * Returns the result of validating this property against the properties currently
+         * in force, validating it if that has not been done yet. Validation against a given
+         * set of property values is only done once, however many threads or
+         * {@link PropertyContext}s ask for it at the same time, and is then reused until
+         * {@link #invalidate()} is called.
+         * 
+         * @param validate function that validates this property
+         * @return result of validation
+         */
+        protected final Object getValidation(Supplier<?> validate) {
+            
+            PropertyContext context = PropertyContext.current();
+            if ( context != null ) {
+                Object validation = context.getValidation(this);
+                if ( validation != null )
+                    return validation;
+                PropertyContext.Values values = context.getValues();
+                synchronized (this) {
+                    validation = this.contextValidation.get(values);
+                    if ( validation == null ) {
+                        validation = validate.get();
+                        this.contextValidation.put(values, validation);
+                    }
+                }
+                return context.putValidation(this, validation);
+            }
+            
+            Object validation = this.validation;
+            if ( validation == null ) {
+                synchronized (this) {
+                    validation = this.validation;
+                    if ( validation == null )
+                        this.validation = validation = validate.get();
+                }
+            }
+            return validation;
+        }
+        
+        /**
+         * Discards the result of validating this property against the global properties,
+         * against any earlier {@link PropertyContext}'s properties, and against those of
+         * the current {@code PropertyContext} if there is one, so that it is validated
+         * again the next time it is used.
+         */
+        protected final void invalidate() {
+            PropertyContext context = PropertyContext.current();
+            if ( context != null )
+                context.removeValidation(this);
+            synchronized (this) {
+                this.contextValidation.clear();
+            }
+            this.validation = null;
+        }
+        
         private String getPropValue() {
             
             if ( ! this.isValid(false) ) {
@@ -314,50 +434,79 @@ public interface PropertyDefinition {
             return this.getUnvalidatedPropValue();
         }
         
+        private List<Double> getDoubleListValue() {
+            String val = this.getPropValue();
+            Parsed<List<Double>> parsed = this.doubleListValue;
+            if ( parsed == null || ! Objects.equals(parsed.val, val) )
+                this.doubleListValue = parsed = new Parsed<>(val, val == null ? null : PropertyValues.asDoubles(val));
+            return parsed.value;
+        }
+        
+        private Path getPathValue() {
+            String val = this.getPropValue();
+            Parsed<Path> parsed = this.pathValue;
+            if ( parsed == null || ! Objects.equals(parsed.val, val) )
+                this.pathValue = parsed = new Parsed<>(val, PropertyValues.asPath(val));
+            return parsed.value;
+        }
+        
         protected boolean isValid(boolean required) {
-            if ( this.valid == null )  {
-                this.valid = true;
-                
-                String val = this.getUnvalidatedPropValue();
-                List<String> args = val == null || val.isEmpty() ? Collections.emptyList() : Arrays.asList(val.split("\\s+"));
-                int nArgs = args.size();
-                
-                if ( required ) {
-                    if ( this.maxArgs == 0 )
-                        throw new RuntimeException("BUG: called isValid(true) for " + this.getPropName() + 
-                                " which has maxArgs==0. This makes no sense!");
-                    else if ( val == null )
-                        logger.severe(String.format("Property %s has not been assigned, but it "
-                                + "is a required property for this application", this.getPropName()));
-                }
-                
-                // For a required property, the number of arguments must always be within the specified range
-                // For an optional property, the number of arguments must be within the range if any have been assigned
-                if ( (required || val != null) && (nArgs < this.minArgs || nArgs > this.maxArgs) )
-                    logger.severe(String.format("Property %s has %d arguments: should have a minimum of "
-                            + "%d and a maximum of %d", this.getPropName(), nArgs, this.minArgs, this.maxArgs));
-                
-                if ( this.validator != null ) {
+            return (Boolean) this.getValidation( () -> this.validate(required) );
+        }
+        
+        private boolean validate(boolean required) {
+            
+            boolean valid = true;
+            
+            String val = this.getUnvalidatedPropValue();
+            List<String> args = PropertyValues.split(val);
+            int nArgs = args.size();
+            
+            if ( required ) {
+                if ( this.maxArgs == 0 )
+                    throw new RuntimeException("BUG: called isValid(true) for " + this.getPropName() + 
+                            " which has maxArgs==0. This makes no sense!");
+                else if ( val == null )
+                    logger.severe(String.format("Property %s has not been assigned, but it "
+                            + "is a required property for this application", this.getPropName()));
+            }
+            
+            // For a required property, the number of arguments must always be within the specified range
+            // For an optional property, the number of arguments must be within the range if any have been assigned
+            if ( (required || val != null) && (nArgs < this.minArgs || nArgs > this.maxArgs) )
+                logger.severe(String.format("Property %s has %d arguments: should have a minimum of "
+                        + "%d and a maximum of %d", this.getPropName(), nArgs, this.minArgs, this.maxArgs));
+            
+            if ( this.validator != null ) {
 
-                    for ( String arg: args )
-                    
-                        try {
-                            this.validator.apply(arg);
-                        }
-                        catch (Throwable t) {
-                            this.valid = false;
-                            
-                            logger.logp(Level.SEVERE, this.getClass().getName(), "isValid",
-                                    String.format("Value '%s' assigned to property %s has "
-                                            + "failed validation", arg, this.getPropName()),
-                                    t);
-                        }
-                }
+                for ( String arg: args )
+                
+                    try {
+                        this.validator.apply(arg);
+                    }
+                    catch (Throwable t) {
+                        valid = false;
+                        
+                        logger.logp(Level.SEVERE, this.getClass().getName(), "isValid",
+                                String.format("Value '%s' assigned to property %s has "
+                                        + "failed validation", arg, this.getPropName()),
+                                t);
+                    }
             }
 
-            return this.valid;
+            return valid;
+        }
+        
+        private static final class Parsed<T> {
+            
+            private final String val;
+            private final T value;
+            
+            private Parsed(String val, T value) {
+                this.val = val;
+                this.value = value;
+            }
         }
-
 
     }
     
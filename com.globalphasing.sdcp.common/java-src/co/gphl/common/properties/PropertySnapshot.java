@@ -0,0 +1,169 @@
+/**
+ * Copyright © 2026 by Global Phasing Ltd. All rights reserved
+ *
+ * This software is proprietary to and embodies the confidential
+ * technology of Global Phasing Limited (GPhL).
+ *
+ * Any possession or use (including but not limited to duplication, reproduction
+ * and dissemination) of this software (in either source or compiled form) is
+ * forbidden except where an agreement with GPhL that permits such possession or
+ * use is in force.
+ *
+ */
+
+package co.gphl.common.properties;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Values of {@link PropertyDefinition}s as they were when the snapshot was taken.
+ * The properties are copied once, and each definition's value is looked up, validated
+ * and converted to its typed forms the first time it is asked for. After that the
+ * values are read from a cache, so code that checks the same properties over and over
+ * again does not have to go back to the {@link Properties} object each time.
+ *
+ * <p>Changes made to the properties after the snapshot was taken are not seen: take
+ * a new snapshot with {@link #refresh()} to pick them up. Instances are immutable,
+ * apart from the cache, and thread-safe.</p>
+ */
+public final class PropertySnapshot {
+
+    private final Properties source, values;
+    private final Map<PropertyDefinition, Value> cache = new ConcurrentHashMap<>();
+
+    private PropertySnapshot(Properties source) {
+        this.source = source;
+        this.values = new Properties();
+        for ( String name: source.stringPropertyNames() )
+            this.values.setProperty(name, source.getProperty(name));
+    }
+
+    /**
+     * @param properties properties to take a snapshot of, including their defaults
+     * @return snapshot of {@code properties}
+     */
+    public static PropertySnapshot of(Properties properties) {
+        return new PropertySnapshot(properties);
+    }
+
+    /**
+     * @return snapshot of the properties that {@link PropertyDefinition}s take their
+     * values from on the current thread
+     * @see PropertyContext#getProperties()
+     */
+    public static PropertySnapshot current() {
+        return new PropertySnapshot(PropertyContext.getProperties());
+    }
+
+    /**
+     * @return new snapshot of the same properties as this one
+     */
+    public PropertySnapshot refresh() {
+        return new PropertySnapshot(this.source);
+    }
+
+    /**
+     * @param property
+     * @return value of {@code property} as {@link PropertyDefinition#getPropValue()}
+     * would have returned it when this snapshot was taken
+     */
+    public String getValue(PropertyDefinition property) {
+        return this.get(property).getValue();
+    }
+
+    /**
+     * @param property
+     * @return value of {@code property} as {@link PropertyDefinition#getPropBoolValue()}
+     * would have returned it when this snapshot was taken
+     */
+    public boolean getBoolValue(PropertyDefinition property) {
+        return this.get(property).getBoolValue();
+    }
+
+    /**
+     * @param property
+     * @return value of {@code property} as {@link PropertyDefinition#getPropDoubleValue()}
+     * would have returned it when this snapshot was taken
+     */
+    public Double getDoubleValue(PropertyDefinition property) {
+        return this.get(property).getDoubleValue();
+    }
+
+    private Value get(PropertyDefinition property) {
+        Value value = this.cache.get(property);
+        if ( value == null ) {
+            // Not computeIfAbsent: validation may look up other properties
+            value = PropertyContext.with(this.values, () -> new Value(property));
+            Value prevValue = this.cache.putIfAbsent(property, value);
+            if ( prevValue != null )
+                value = prevValue;
+        }
+        return value;
+    }
+
+    // Value of one property in each of its forms, or the exception that
+    // getting it in that form threw. Made in a context of the snapshot's values.
+    private static final class Value {
+
+        private final String value;
+        private final Boolean boolValue;
+        private final Double doubleValue;
+        private final RuntimeException valueError, boolError, doubleError;
+
+        private Value(PropertyDefinition property) {
+
+            String value = null;
+            Boolean boolValue = null;
+            Double doubleValue = null;
+            RuntimeException valueError = null, boolError = null, doubleError = null;
+
+            try {
+                value = property.getPropValue();
+                try {
+                    boolValue = property.getPropBoolValue();
+                }
+                catch (RuntimeException e) {
+                    boolError = e;
+                }
+                try {
+                    doubleValue = property.getPropDoubleValue();
+                }
+                catch (RuntimeException e) {
+                    doubleError = e;
+                }
+            }
+            catch (RuntimeException e) {
+                // Failed validation, or not allowed for this kind of property
+                valueError = boolError = doubleError = e;
+            }
+
+            this.value = value;
+            this.boolValue = boolValue;
+            this.doubleValue = doubleValue;
+            this.valueError = valueError;
+            this.boolError = boolError;
+            this.doubleError = doubleError;
+        }
+
+        private String getValue() {
+            if ( this.valueError != null )
+                throw this.valueError;
+            return this.value;
+        }
+
+        private boolean getBoolValue() {
+            if ( this.boolError != null )
+                throw this.boolError;
+            return this.boolValue;
+        }
+
+        private Double getDoubleValue() {
+            if ( this.doubleError != null )
+                throw this.doubleError;
+            return this.doubleValue;
+        }
+    }
+
+}
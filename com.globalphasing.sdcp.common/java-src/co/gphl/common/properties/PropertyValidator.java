@@ -0,0 +1,320 @@
+/**
+ * Copyright © 2026 by Global Phasing Ltd. All rights reserved
+ *
+ * This software is proprietary to and embodies the confidential
+ * technology of Global Phasing Limited (GPhL).
+ *
+ * Any possession or use (including but not limited to duplication, reproduction
+ * and dissemination) of this software (in either source or compiled form) is
+ * forbidden except where an agreement with GPhL that permits such possession or
+ * use is in force.
+ *
+ */
+
+package co.gphl.common.properties;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Validates many {@link PropertyDefinition}s and {@link ApplicationSpec}s at once,
+ * typically when an application starts, and reports the outcome for each of them.
+ * The checks on the file system are run in parallel, which helps when it is slow.
+ *
+ * <p>The results of validation are cached, as they are when properties are
+ * validated one at a time, so properties that have been validated here are not
+ * validated again when they are used. If the calling thread is in a
+ * {@link PropertyContext}, the properties of the context are validated, and the
+ * results are cached for other contexts with the same property values. Warnings
+ * logged during validation are therefore only reported for a property the first
+ * time it is validated with a given value. A required property that has not been
+ * assigned, or a value with the wrong number of arguments, is always reported as
+ * invalid.</p>
+ */
+public final class PropertyValidator {
+
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private static final String LOGGERNAME = PropertyValidator.class.getPackage().getName();
+
+    private PropertyValidator() {
+    }
+
+    /**
+     * Validates every property that has been registered so far, with
+     * {@value #DEFAULT_PARALLELISM} threads. Properties are registered when their
+     * class is initialised, so the classes of all the properties that matter should
+     * be named in {@code required}, or initialised before this is called.
+     *
+     * @param required properties that must be assigned valid values. These are
+     * validated whether or not they have been registered.
+     * @return report on every property validated
+     */
+    public static Report validateAll(Collection<? extends PropertyDefinition> required) {
+        Set<PropertyDefinition> properties = new LinkedHashSet<PropertyDefinition>(required);
+        properties.addAll(PropertyDefinition.State.getRegistered());
+        return PropertyValidator.validateAll(properties, required, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Validates the given properties.
+     *
+     * @param properties properties to validate
+     * @param required those of {@code properties} that must be assigned valid values
+     * @param parallelism maximum number of properties to validate at once
+     * @return report on each of {@code properties}, in the same order
+     */
+    public static Report validateAll(Collection<? extends PropertyDefinition> properties,
+            Collection<? extends PropertyDefinition> required, int parallelism) {
+
+        if ( parallelism < 1 )
+            throw new IllegalArgumentException("Need parallelism >= 1, got " + parallelism);
+
+        long start = System.nanoTime();
+        Properties scoped = PropertyContext.current() == null ? null : PropertyContext.getProperties();
+
+        // Messages logged by the validation code are collected for each property
+        // by the thread that validates it.
+        Logger logger = Logger.getLogger(LOGGERNAME);
+        Collector collector = new Collector();
+        logger.addHandler(collector);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, properties.size())), r -> {
+            Thread t = new Thread(r, PropertyValidator.class.getSimpleName());
+            t.setDaemon(true);
+            return t;
+        } );
+
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>(properties.size());
+            for ( PropertyDefinition property: properties ) {
+                boolean isRequired = required.contains(property);
+                futures.add( executor.submit( () -> PropertyContext.with(scoped,
+                        () -> PropertyValidator.validate(property, isRequired, collector)) ) );
+            }
+
+            List<Result> results = new ArrayList<Result>(futures.size());
+            for ( Future<Result> future: futures )
+                results.add(future.get());
+            return new Report(results, System.nanoTime() - start);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while validating properties", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("BUG: unexpected failure validating properties", e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+            logger.removeHandler(collector);
+        }
+    }
+
+    private static Result validate(PropertyDefinition property, boolean required, Collector collector) {
+
+        List<String> messages = new ArrayList<String>();
+        collector.messages.set(messages);
+        try {
+            PropertyDefinition.State state = PropertyDefinition.State.getState(property);
+            if ( state == null )
+                return new Result(property, null, false, required, null,
+                        Collections.singletonList("Property has not been registered"));
+
+            String value = state.getUnvalidatedPropValue();
+            // Asking for a required property that takes no arguments is a bug
+            boolean mustAssign = required && property.getMaxArgs() > 0;
+            boolean valid;
+            Path path = null;
+            try {
+                valid = property.isValid(mustAssign);
+                if ( valid && property instanceof ApplicationSpec && ((ApplicationSpec) property).isEnabled() )
+                    path = ((ApplicationSpec) property).getPath();
+            }
+            catch (RuntimeException e) {
+                valid = false;
+                messages.add(e.toString());
+            }
+
+            // isValid() only logs these, and only the first time it is called
+            int nArgs = PropertyValues.countArgs(value);
+            if ( mustAssign && value == null ) {
+                valid = false;
+                PropertyValidator.addMessage(messages, String.format("Property %s has not been assigned, but it "
+                        + "is a required property for this application", property.getPropName()));
+            }
+            else if ( (mustAssign || value != null)
+                    && (nArgs < property.getMinArgs() || nArgs > property.getMaxArgs()) ) {
+                valid = false;
+                PropertyValidator.addMessage(messages, String.format("Property %s has %d arguments: should have a minimum of "
+                        + "%d and a maximum of %d", property.getPropName(), nArgs, property.getMinArgs(), property.getMaxArgs()));
+            }
+            return new Result(property, value, valid, required, path, messages);
+        }
+        finally {
+            collector.messages.remove();
+        }
+    }
+
+    // Adds a message unless the same one has already been collected from the log
+    private static void addMessage(List<String> messages, String message) {
+        if ( ! messages.contains(message) )
+            messages.add(message);
+    }
+
+    // Collects log messages for the property being validated on the current thread
+    private static final class Collector extends Handler {
+
+        private final ThreadLocal<List<String>> messages = new ThreadLocal<List<String>>();
+        private final SimpleFormatter formatter = new SimpleFormatter();
+
+        @Override
+        public void publish(LogRecord record) {
+            List<String> sink = this.messages.get();
+            if ( sink != null && record.getLevel().intValue() > Level.INFO.intValue() )
+                sink.add(this.formatter.formatMessage(record));
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Outcome of validating one property
+     */
+    public static final class Result {
+
+        private final PropertyDefinition property;
+        private final String value;
+        private final boolean valid, required;
+        private final Path path;
+        private final List<String> messages;
+
+        private Result(PropertyDefinition property, String value, boolean valid,
+                boolean required, Path path, List<String> messages) {
+            this.property = property;
+            this.value = value;
+            this.valid = valid;
+            this.required = required;
+            this.path = path;
+            this.messages = Collections.unmodifiableList(messages);
+        }
+
+        public PropertyDefinition getProperty() {
+            return this.property;
+        }
+
+        /**
+         * @return value assigned to the property, or its default, without validation
+         */
+        public String getValue() {
+            return this.value;
+        }
+
+        public boolean isValid() {
+            return this.valid;
+        }
+
+        public boolean isRequired() {
+            return this.required;
+        }
+
+        /**
+         * @return path of the application, for a valid and enabled {@link ApplicationSpec},
+         * otherwise {@code null}
+         */
+        public Path getPath() {
+            return this.path;
+        }
+
+        /**
+         * @return warnings and errors reported while validating the property
+         */
+        public List<String> getMessages() {
+            return this.messages;
+        }
+
+        @Override
+        public String toString() {
+            String name = this.property.getPropName();
+            StringBuilder retval = new StringBuilder(this.valid ? "OK      " : "INVALID ")
+                    .append(name).append(" = ").append(this.value);
+            if ( this.path != null )
+                retval.append(" (").append(this.path).append(')');
+            for ( String message: this.messages )
+                retval.append("\n        ").append(message);
+            return retval.toString();
+        }
+    }
+
+    /**
+     * Outcome of validating a set of properties
+     */
+    public static final class Report {
+
+        private final List<Result> results;
+        private final long elapsedNanos;
+
+        private Report(List<Result> results, long elapsedNanos) {
+            this.results = Collections.unmodifiableList(results);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return {@code true} if every property validated is valid
+         */
+        public boolean isValid() {
+            return this.getFailures().isEmpty();
+        }
+
+        public List<Result> getResults() {
+            return this.results;
+        }
+
+        /**
+         * @return results for the properties that are not valid
+         */
+        public List<Result> getFailures() {
+            List<Result> retval = new ArrayList<Result>();
+            for ( Result result: this.results ) {
+                if ( ! result.isValid() )
+                    retval.add(result);
+            }
+            return retval;
+        }
+
+        public long getElapsedNanos() {
+            return this.elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder retval = new StringBuilder(String.format("Validated %d properties in %.1f ms: %d invalid",
+                    this.results.size(), this.elapsedNanos / 1.0e6, this.getFailures().size()));
+            for ( Result result: this.results )
+                retval.append('\n').append(result);
+            return retval.toString();
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright © 2026 by Global Phasing Ltd. All rights reserved
+ *
+ * This software is proprietary to and embodies the confidential
+ * technology of Global Phasing Limited (GPhL).
+ *
+ * Any possession or use (including but not limited to duplication, reproduction
+ * and dissemination) of this software (in either source or compiled form) is
+ * forbidden except where an agreement with GPhL that permits such possession or
+ * use is in force.
+ *
+ */
+
+package co.gphl.common.properties;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Conversions between the string values of properties and their typed forms.
+ * Values that hold several arguments separate them with white space, which is
+ * taken to be any of the characters matched by {@code \s} in a
+ * {@link java.util.regex.Pattern}.
+ */
+public final class PropertyValues {
+
+    private PropertyValues() {
+    }
+
+    /**
+     * Splits a value into its arguments. Unlike {@code val.split("\\s+")}, no
+     * regular expression is involved, and leading white space and empty values
+     * give no empty arguments.
+     *
+     * @param val property value, or {@code null}
+     * @return arguments, which is empty if {@code val} is {@code null} or blank
+     */
+    public static List<String> split(String val) {
+
+        if ( val == null || val.isEmpty() )
+            return Collections.emptyList();
+
+        List<String> retval = new ArrayList<String>(4);
+        int len = val.length(), start = -1;
+        for ( int i = 0; i < len; i++ ) {
+            if ( PropertyValues.isSpace(val.charAt(i)) ) {
+                if ( start >= 0 ) {
+                    retval.add(val.substring(start, i));
+                    start = -1;
+                }
+            }
+            else if ( start < 0 )
+                start = i;
+        }
+        if ( start >= 0 )
+            retval.add(start == 0 ? val : val.substring(start));
+        return retval;
+    }
+
+    /**
+     * @param val property value, or {@code null}
+     * @return number of arguments in {@code val}, counted without splitting it
+     */
+    public static int countArgs(String val) {
+
+        if ( val == null )
+            return 0;
+
+        int retval = 0;
+        boolean inArg = false;
+        for ( int i = 0; i < val.length(); i++ ) {
+            boolean space = PropertyValues.isSpace(val.charAt(i));
+            if ( ! space && ! inArg )
+                retval++;
+            inArg = ! space;
+        }
+        return retval;
+    }
+
+    /**
+     * @param val property value, or {@code null}
+     * @return arguments of {@code val} as numbers, in a list that cannot be modified
+     * @throws NumberFormatException if an argument is not a number
+     */
+    public static List<Double> asDoubles(String val) {
+        List<String> args = PropertyValues.split(val);
+        List<Double> retval = new ArrayList<Double>(args.size());
+        for ( String arg: args )
+            retval.add(Double.valueOf(arg));
+        return Collections.unmodifiableList(retval);
+    }
+
+    /**
+     * @param val property value, or {@code null}
+     * @return {@code val} as a path, or {@code null} if {@code val} is {@code null} or empty
+     * @throws java.nio.file.InvalidPathException if {@code val} is not a valid path
+     */
+    public static Path asPath(String val) {
+        return val == null || val.isEmpty() ? null : Paths.get(val);
+    }
+
+    /**
+     * Formats values as a property value with several arguments, the
+     * inverse of {@link #split(String)}.
+     *
+     * @param values
+     * @return string forms of {@code values}, separated by single spaces
+     */
+    public static String format(Collection<?> values) {
+        StringBuilder retval = new StringBuilder(values.size() * 8);
+        for ( Object value: values ) {
+            if ( retval.length() > 0 )
+                retval.append(' ');
+            retval.append(value);
+        }
+        return retval.toString();
+    }
+
+    // The characters in the regex class \s
+    private static boolean isSpace(char c) {
+        switch ( c ) {
+        case ' ': case '\t': case '\n': case '\u000B': case '\f': case '\r':
+            return true;
+        default:
+            return false;
+        }
+    }
+
+}
@@ -12,8 +12,18 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import co.gphl.common.io.streams.StreamPrinter;
+import co.gphl.common.threads.ProcessResult.Termination;
 
 /**
  * @author pkeller
@@ -21,6 +31,8 @@ import co.gphl.common.io.streams.StreamPrinter;
  */
 public class ProcessLauncher implements Runnable {
 
+    private static final Logger logger = Logger.getLogger(ProcessLauncher.class.getName());
+    
     private ProcessBuilder processBuilder;
     private String lastOutLine, lastErrLine;
 
@@ -29,6 +41,33 @@ public class ProcessLauncher implements Runnable {
     private boolean append, captureLastLine;
     private Integer status = null;
     
+    private StreamPrinter outPrinter, errPrinter;
+    private long startTimeMillis, startNanos;
+    private ProcessSampler sampler;
+    private ProcessResult result = null;
+    private Consumer<? super ProcessResult> metricsListener = null;
+    private Consumer<String> lineSink = null;
+    private int tailLines = DEFAULT_TAIL_LINES;
+    private TailCollector outTail, errTail;
+    // Whether a process is being run. The fields above describe it, so only
+    // one can be run at a time.
+    private boolean running = false;
+    
+    /**
+     * Default number of lines at the end of standard output and error that are kept
+     * in the {@link ProcessResult}
+     */
+    public static final int DEFAULT_TAIL_LINES = 20;
+    
+    /**
+     * Default time allowed for a process to exit after being asked to, before it is
+     * killed forcibly. The same time is allowed for its output to be drained.
+     */
+    public static final long DEFAULT_KILL_GRACE_MILLIS = 5000L;
+    
+    private long timeoutNanos = 0L;
+    private long graceNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_KILL_GRACE_MILLIS);
+    
     /**
      * Creates a launcher ready to run a process specified by {@code processBuilder}.
      * 
@@ -54,19 +93,56 @@ public class ProcessLauncher implements Runnable {
      * {@code if (stderr == null && stderrFile == null)}, standard 
      * error of the process will be merged with standard output.
      * 
+     * <p>If a {@link #setTimeout(long, TimeUnit) timeout} has been set and the process
+     * runs for longer, it is killed as described for {@link #setKillGrace(long, TimeUnit)} and
+     * a {@link ProcessTimeoutException} is thrown. If the calling thread is interrupted while
+     * waiting, the process is killed in the same way and its output drained before the
+     * {@code InterruptedException} is thrown.</p>
+     * 
      * @param stdout
      * @param stderr
      * @param stdoutFile
      * @param stderrFile
      * @throws TerminationException if the subprocess exits with a non-zero status
+     * @throws ProcessTimeoutException if the subprocess is killed because it timed out
      * @throws IOException
      * @throws InterruptedException
+     * @throws IllegalStateException if a process started by this launcher is still running
      * @see ProcessBuilder#redirectErrorStream(boolean)
+     * @see #execute(Writer, Writer, File, File, boolean, boolean)
      */
     public void startAndWait(Writer stdout, Writer stderr, File stdoutFile, File stderrFile,
             boolean append, boolean captureLastLine)
             throws TerminationException, IOException, InterruptedException {
 
+        ProcessLauncher.check(this.execute(stdout, stderr, stdoutFile, stderrFile, append, captureLastLine),
+                this.timeoutNanos, this.commandLine(80, "\n"));
+        
+    }
+
+    /**
+     * Runs the process as {@link #startAndWait(Writer, Writer, File, File, boolean, boolean)}
+     * does, but reports failure and timeout through {@link ProcessResult#getTermination()}
+     * instead of by throwing exceptions, so that callers that deal with failures routinely
+     * do not pay for them.
+     * 
+     * @param stdout
+     * @param stderr
+     * @param stdoutFile
+     * @param stderrFile
+     * @param append
+     * @param captureLastLine
+     * @return result of the process
+     * @throws IOException if the process could not be started
+     * @throws InterruptedException if interrupted while waiting. The process is killed
+     * first, and its result, classified as {@link Termination#CANCELLED}, is available
+     * from {@link #getResult()}.
+     * @throws IllegalStateException if a process started by this launcher is still running
+     */
+    public ProcessResult execute(Writer stdout, Writer stderr, File stdoutFile, File stderrFile,
+            boolean append, boolean captureLastLine) throws IOException, InterruptedException {
+
+        this.claim();
         this.stdout = stdout;
         this.stderr = stderr;
         this.stdoutFile = stdoutFile;
@@ -74,8 +150,7 @@ public class ProcessLauncher implements Runnable {
         this.append = append;
         this.captureLastLine = captureLastLine;
         
-        this.run();
-        
+        return this.waitFor(this.start());
     }
 
     /**
@@ -96,6 +171,135 @@ public class ProcessLauncher implements Runnable {
 
     }
 
+    /**
+     * Starts the process specified to the constructor and returns without waiting for it
+     * to finish. Standard output and error are handled as described for
+     * {@link #startAndWait(Writer, Writer, File, File, boolean, boolean)}.
+     * 
+     * <p>The returned future is completed by a single thread that supervises all processes
+     * started this way, once the process has exited and its output has been completely copied
+     * to the destination(s). It is completed normally whatever the exit status of the process:
+     * use {@link ProcessResult#getStatus()} to check it. Dependent stages that are not
+     * run asynchronously will be run on the supervising thread, so should not block.</p>
+     * 
+     * <p>If a {@link #setTimeout(long, TimeUnit) timeout} has been set and the process runs
+     * for longer, it is killed and the future is completed exceptionally with a
+     * {@link ProcessTimeoutException}. {@link CompletableFuture#cancel(boolean) Cancelling}
+     * the future kills the process in the same way. If supervising the process fails,
+     * the process is killed and the future is completed exceptionally with the cause.</p>
+     * 
+     * <p>A launcher runs one process at a time, so another process cannot be started
+     * with it until the future has completed. Use a launcher for each process that
+     * is to run at the same time.</p>
+     * 
+     * @param stdout
+     * @param stderr
+     * @param stdoutFile
+     * @param stderrFile
+     * @param append
+     * @param captureLastLine
+     * @return future that completes with the result of the process
+     * @throws IOException if the process could not be started
+     * @throws IllegalStateException if a process started by this launcher is still running
+     */
+    public CompletableFuture<ProcessResult> startAsync(Writer stdout, Writer stderr,
+            File stdoutFile, File stderrFile, boolean append, boolean captureLastLine)
+            throws IOException {
+
+        this.claim();
+        this.stdout = stdout;
+        this.stderr = stderr;
+        this.stdoutFile = stdoutFile;
+        this.stderrFile = stderrFile;
+        this.append = append;
+        this.captureLastLine = captureLastLine;
+
+        Process process = this.start();
+        CompletableFuture<ProcessResult> future = new CompletableFuture<>();
+        
+        ProcessWatcher.watch( new Supervisor(process, future) );
+        
+        return future;
+    }
+    
+    /**
+     * Sets a wall-clock time limit for processes started by this launcher.
+     * 
+     * @param timeout maximum run time, or {@code 0} for no limit
+     * @param unit unit of {@code timeout}
+     * @throws IllegalArgumentException {@code if ( timeout < 0 )}
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        if ( timeout < 0L )
+            throw new IllegalArgumentException("Timeout cannot be negative: " + timeout);
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+    
+    /**
+     * Sets a listener to be given the {@link ProcessResult} of every process run by
+     * this launcher, including those that fail or time out, for collecting
+     * {@link ResourceUsage resource usage} figures. The listener is called on the
+     * thread that sees the process finish, so it should not block. Exceptions
+     * thrown by the listener are logged and otherwise ignored.
+     * 
+     * @param metricsListener listener, or {@code null} to remove it
+     */
+    public void setMetricsListener(Consumer<? super ProcessResult> metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+    
+    /**
+     * Sets a consumer to be given each line of standard output (which includes
+     * standard error if the two are merged) as soon as it has been read, for
+     * processes started after this call.
+     * 
+     * @param lineSink consumer for lines, or {@code null} for none
+     * @see StreamPrinter#setLineSink(Consumer)
+     */
+    public void setLineSink(Consumer<String> lineSink) {
+        this.lineSink = lineSink;
+    }
+    
+    /**
+     * Sets the number of lines at the end of standard output and standard error
+     * that are kept in the {@link ProcessResult}, for processes started after this
+     * call. The default is {@value #DEFAULT_TAIL_LINES}.
+     * 
+     * @param tailLines number of lines, or {@code 0} to keep none
+     * @throws IllegalArgumentException {@code if ( tailLines < 0 )}
+     */
+    public void setTailLines(int tailLines) {
+        if ( tailLines < 0 )
+            throw new IllegalArgumentException("Number of tail lines cannot be negative: " + tailLines);
+        this.tailLines = tailLines;
+    }
+    
+    /**
+     * Returns the result of the last process run by this launcher, including one that
+     * failed or timed out.
+     * 
+     * @return result, or {@code null} if no process has finished yet
+     */
+    public ProcessResult getResult() {
+        return this.result;
+    }
+    
+    /**
+     * Sets the time that a process that is being killed is given to exit after
+     * {@link Process#destroy()}, before {@link Process#destroyForcibly()} is used.
+     * The same time is allowed after the process has exited for its output to be
+     * drained. The default is {@value #DEFAULT_KILL_GRACE_MILLIS}ms.
+     * 
+     * @param grace
+     * @param unit unit of {@code grace}
+     * @throws IllegalArgumentException {@code if ( grace < 0 )}
+     */
+    public void setKillGrace(long grace, TimeUnit unit) {
+        if ( grace < 0L )
+            throw new IllegalArgumentException("Grace period cannot be negative: " + grace);
+        this.graceNanos = unit.toNanos(grace);
+    }
+
     public String getLastOutLine() {
         return lastOutLine;
     }
@@ -131,48 +335,321 @@ public class ProcessLauncher implements Runnable {
 
     }
 
+    /**
+     * Runs the process as {@link #startAndWait(Writer, Writer, File, File, boolean, boolean)}
+     * does with the settings from the last call to that method, but with all exceptions
+     * wrapped in a {@code RuntimeException}.
+     */
     public void run() {
         
+        this.claim();
+        try {
+            ProcessLauncher.check(this.waitFor(this.start()), this.timeoutNanos, this.commandLine(80, "\n"));
+        } catch (IOException | TerminationException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+    }
+    
+    private ProcessResult waitFor(Process process) throws InterruptedException {
+        
+        boolean timedOut = false;
+        
+        try {
+            if ( this.timeoutNanos > 0L )
+                timedOut = ! process.waitFor(this.timeoutNanos, TimeUnit.NANOSECONDS);
+            else
+                process.waitFor();
+        }
+        catch (InterruptedException e) {
+            this.kill(process);
+            this.finish(process.exitValue(), Termination.CANCELLED);
+            throw e;
+        }
+        
+        if ( timedOut ) {
+            this.kill(process);
+            return this.finish(process.exitValue(), Termination.TIMED_OUT);
+        }
+        
+        // Make sure that we don't race ahead of the output
+        outPrinter.join();
+        if ( errPrinter != null )
+            errPrinter.join();
+        
+        return this.finish(process.exitValue(), null);
+    }
+    
+    // Turns an abnormal result into an exception. The messages are only built here,
+    // so callers that use the result directly do not pay for them.
+    private static void check(ProcessResult result, long timeoutNanos, String commandLine)
+            throws TerminationException {
+        
+        switch ( result.getTermination() ) {
+        case NORMAL:
+            return;
+        case TIMED_OUT:
+            throw new ProcessTimeoutException(String.format(
+                    "Command killed after exceeding timeout of %.1fs:\n%s",
+                    timeoutNanos / 1.0e9, commandLine ), result);
+        default:
+            throw new TerminationException("Command exited with status " + result.getStatus()
+                    + ":\n" + commandLine );
+        }
+    }
+    
+    // Kills the process and drains its output, not giving up if interrupted. If
+    // we are interrupted, the interrupt status is restored before returning.
+    private void kill(Process process) {
+        
+        boolean interrupted = false;
+        long graceMillis = TimeUnit.NANOSECONDS.toMillis(this.graceNanos);
+        
+        process.destroy();
+        for (;;) {
+            try {
+                if ( ! process.waitFor(this.graceNanos, TimeUnit.NANOSECONDS) ) {
+                    process.destroyForcibly();
+                    process.waitFor();
+                }
+                outPrinter.join(graceMillis);
+                if ( errPrinter != null )
+                    errPrinter.join(graceMillis);
+                break;
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        
+        if ( interrupted )
+            Thread.currentThread().interrupt();
+    }
+    
+    // Called before the settings for a new process are stored
+    private synchronized void claim() {
+        if ( this.running )
+            throw new IllegalStateException(
+                    "A process started by this launcher is still running: use another launcher");
+        this.running = true;
+    }
+    
+    private synchronized void release() {
+        this.running = false;
+    }
+    
+    private Process start() throws IOException {
+        
         this.processBuilder.redirectErrorStream( stderr == null && stderrFile == null );
         String cmd = this.commandLine(80, "\\\n");
+        
+        this.startTimeMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
         Process process;
         try {
             process = this.processBuilder.start();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
+        catch (IOException | RuntimeException e) {
+            this.release();
+            throw e;
+        }
+        this.sampler = ProcessSampler.start(process);
 
-        StreamPrinter outPrinter = new StreamPrinter(process.getInputStream(), stdout, stdoutFile,
+        this.outPrinter = new StreamPrinter(process.getInputStream(), stdout, stdoutFile,
                 append, cmd, 0, 0, captureLastLine);
-        outPrinter.start();
-
-        StreamPrinter errPrinter = null;
+        this.outTail = this.tailLines > 0 ? new TailCollector(this.tailLines) : null;
+        Consumer<String> outSink = this.outTail;
+        if ( this.lineSink != null )
+            outSink = outSink == null ? this.lineSink : this.outTail.andThen(this.lineSink);
+        this.outPrinter.setLineSink(outSink);
+        this.outPrinter.start();
+
+        this.errPrinter = null;
+        this.errTail = null;
         if ( ! this.processBuilder.redirectErrorStream() ) {
-            errPrinter = new StreamPrinter(process.getErrorStream(), stderr, stderrFile,
+            this.errPrinter = new StreamPrinter(process.getErrorStream(), stderr, stderrFile,
                     append, null, 0, 0, captureLastLine);
-            errPrinter.start();
+            this.errTail = this.tailLines > 0 ? new TailCollector(this.tailLines) : null;
+            this.errPrinter.setLineSink(this.errTail);
+            this.errPrinter.start();
         }
-
+        
+        return process;
+    }
+    
+    // Supervises a process started by startAsync. Called periodically on the
+    // ProcessWatcher thread, so must never block. Any failure completes the
+    // future, so that nobody waits for it for ever.
+    private final class Supervisor implements BooleanSupplier {
+        
+        private final Process process;
+        private final CompletableFuture<ProcessResult> future;
+        private final long deadline;
+        private long killedAt = 0L, exitedAt = 0L;
+        private boolean killing = false, forced = false, timedOut = false;
+        
+        private Supervisor(Process process, CompletableFuture<ProcessResult> future) {
+            this.process = process;
+            this.future = future;
+            this.deadline = ProcessLauncher.this.timeoutNanos > 0L ?
+                    ProcessLauncher.this.startNanos + ProcessLauncher.this.timeoutNanos : 0L;
+        }
+        
+        @Override
+        public boolean getAsBoolean() {
+            
+            try {
+                return this.check();
+            }
+            catch (Throwable t) {
+                logger.log(Level.SEVERE, "BUG: supervising " + ProcessLauncher.this.processBuilder.command()
+                        + " failed: killing it", t);
+                this.process.destroyForcibly();
+                ProcessLauncher.this.release();
+                this.future.completeExceptionally(t);
+                return true;
+            }
+        }
+        
+        private boolean check() {
+            
+            long now = System.nanoTime();
+            long grace = ProcessLauncher.this.graceNanos;
+            boolean cancelled = this.future.isCancelled();
+            
+            if ( this.process.isAlive() ) {
+                if ( ! this.killing ) {
+                    if ( cancelled || ( this.deadline != 0L && now - this.deadline >= 0L ) ) {
+                        this.timedOut = ! cancelled;
+                        this.process.destroy();
+                        this.killing = true;
+                        this.killedAt = now;
+                    }
+                }
+                else if ( ! this.forced && now - this.killedAt >= grace ) {
+                    this.process.destroyForcibly();
+                    this.forced = true;
+                }
+                return false;
+            }
+            
+            if ( this.exitedAt == 0L )
+                this.exitedAt = now;
+            
+            // Only limit the time spent draining the output if we killed the process
+            boolean drained = outPrinter.isFinished() && ( errPrinter == null || errPrinter.isFinished() );
+            if ( ! drained && ( ! this.killing || now - this.exitedAt < grace ) )
+                return false;
+            
+            if ( cancelled ) {
+                // Still of interest to the metrics listener
+                ProcessLauncher.this.finish(this.process.exitValue(), Termination.CANCELLED);
+                return true;
+            }
+            
+            ProcessResult result = ProcessLauncher.this.finish(this.process.exitValue(),
+                    this.timedOut ? Termination.TIMED_OUT : null);
+            if ( this.timedOut ) {
+                try {
+                    ProcessLauncher.check(result, ProcessLauncher.this.timeoutNanos,
+                            ProcessLauncher.this.commandLine(80, "\n"));
+                }
+                catch (TerminationException e) {
+                    this.future.completeExceptionally(e);
+                }
+            }
+            else
+                this.future.complete(result);
+            return true;
+        }
+    }
+    
+    // Call only after the process has exited and the printers have finished.
+    // A null termination means that the process exited by itself.
+    private ProcessResult finish(int status, Termination termination) {
+        
         try {
-            this.status = process.waitFor();
-
-            // Make sure that we don't race ahead of the output
-            outPrinter.join();
-            if ( errPrinter != null )
-                errPrinter.join();
+            return this.record(status, termination);
         }
-        catch ( InterruptedException e) {
-            throw new RuntimeException(e);
+        finally {
+            this.release();
         }
+    }
+    
+    private ProcessResult record(int status, Termination termination) {
+        
+        long elapsedNanos = System.nanoTime() - this.startNanos;
         
+        if ( termination == null )
+            termination = status == 0 ? Termination.NORMAL : Termination.FAILED;
+        
+        this.status = status;
         this.lastOutLine = captureLastLine ? outPrinter.getLastLine() : null;
-        this.lastErrLine = errPrinter == null || captureLastLine ? this.lastOutLine : errPrinter.getLastLine();
-
-        if (this.status != 0)
-            throw new RuntimeException(new TerminationException("Command exited with status " + status
-                    + ":\n" + this.commandLine(80, "\n") ));
-
-
+        // With merged streams, the last line of output is also the last line of error
+        if ( ! captureLastLine )
+            this.lastErrLine = null;
+        else
+            this.lastErrLine = errPrinter == null ? this.lastOutLine : errPrinter.getLastLine();
+        
+        // Start latency is to the first output on either stream
+        long latency = -1L;
+        for ( StreamPrinter printer: new StreamPrinter[]{ outPrinter, errPrinter } ) {
+            if ( printer != null && printer.getBytesRead() > 0L ) {
+                long l = printer.getFirstByteNanos() - this.startNanos;
+                if ( latency < 0L || l < latency )
+                    latency = l;
+            }
+        }
+        ResourceUsage usage = new ResourceUsage(latency,
+                outPrinter.getBytesRead(), errPrinter == null ? 0L : errPrinter.getBytesRead(),
+                sampler == null ? -1L : sampler.getCpuUserMillis(),
+                sampler == null ? -1L : sampler.getCpuSystemMillis(),
+                sampler == null ? -1L : sampler.getPeakRssKb() );
+        
+        this.result = new ProcessResult(this.processBuilder.command(), status, termination,
+                this.lastOutLine, this.lastErrLine,
+                this.outTail == null ? new ArrayList<String>() : this.outTail.lines(),
+                this.errTail == null ? new ArrayList<String>() : this.errTail.lines(),
+                this.stdoutFile, this.stderrFile, this.startTimeMillis, elapsedNanos, usage);
+        
+        Consumer<? super ProcessResult> listener = this.metricsListener;
+        if ( listener != null ) {
+            try {
+                listener.accept(this.result);
+            }
+            catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Metrics listener failed", e);
+            }
+        }
+        
+        return this.result;
+    }
+    
+    // Keeps the last few lines given to it. Synchronized because a printer that
+    // has been given up on after a kill may still be running.
+    private static final class TailCollector implements Consumer<String> {
+        
+        private final int size;
+        private final ArrayDeque<String> lines;
+        
+        private TailCollector(int size) {
+            this.size = size;
+            this.lines = new ArrayDeque<>(size);
+        }
+        
+        @Override
+        public synchronized void accept(String line) {
+            if ( this.lines.size() == this.size )
+                this.lines.removeFirst();
+            this.lines.addLast(line);
+        }
+        
+        private synchronized List<String> lines() {
+            return new ArrayList<>(this.lines);
+        }
     }
     
 }
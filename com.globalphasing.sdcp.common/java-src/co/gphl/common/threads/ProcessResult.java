@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.common.threads;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a process run by a {@link ProcessLauncher}. Instances are immutable.
+ * 
+ * <p>How the process ended is classified by {@link #getTermination()}, so that
+ * callers can decide what to do about a failure without catching exceptions.</p>
+ */
+public final class ProcessResult {
+
+    /**
+     * How a process ended
+     */
+    public enum Termination {
+        
+        /**
+         * Exited with status 0, and nothing else was found wrong
+         */
+        NORMAL,
+        
+        /**
+         * Exited with a non-zero status, or was found to have failed in some other way
+         */
+        FAILED,
+        
+        /**
+         * Killed because it exceeded its timeout
+         */
+        TIMED_OUT,
+        
+        /**
+         * Killed because the caller cancelled it or was interrupted
+         */
+        CANCELLED
+    }
+
+    private final List<String> command;
+    private final int status;
+    private final Termination termination;
+    private final String lastOutLine, lastErrLine;
+    private final List<String> stdoutTail, stderrTail;
+    private final File stdoutFile, stderrFile;
+    private final long startTimeMillis, elapsedNanos;
+    private final ResourceUsage resourceUsage;
+
+    ProcessResult(List<String> command, int status, Termination termination,
+            String lastOutLine, String lastErrLine, List<String> stdoutTail, List<String> stderrTail,
+            File stdoutFile, File stderrFile,
+            long startTimeMillis, long elapsedNanos, ResourceUsage resourceUsage) {
+        this.command = Collections.unmodifiableList(command);
+        this.status = status;
+        this.termination = termination;
+        this.lastOutLine = lastOutLine;
+        this.lastErrLine = lastErrLine;
+        this.stdoutTail = Collections.unmodifiableList(stdoutTail);
+        this.stderrTail = Collections.unmodifiableList(stderrTail);
+        this.stdoutFile = stdoutFile;
+        this.stderrFile = stderrFile;
+        this.startTimeMillis = startTimeMillis;
+        this.elapsedNanos = elapsedNanos;
+        this.resourceUsage = resourceUsage;
+    }
+
+    /**
+     * Returns a copy of this result with a different classification, for use by
+     * callers that apply their own checks for success: for example, looking for a
+     * message in the output of an application that does not set its exit status.
+     * 
+     * @param termination new classification
+     * @return this result, if it is already classified as {@code termination}, or a copy
+     */
+    public ProcessResult withTermination(Termination termination) {
+        if ( termination == this.termination )
+            return this;
+        return new ProcessResult(this.command, this.status, termination, this.lastOutLine,
+                this.lastErrLine, this.stdoutTail, this.stderrTail, this.stdoutFile, this.stderrFile,
+                this.startTimeMillis, this.elapsedNanos, this.resourceUsage);
+    }
+
+    /**
+     * @return the command line that was run
+     */
+    public List<String> getCommand() {
+        return this.command;
+    }
+
+    /**
+     * @return exit status of the process
+     */
+    public int getStatus() {
+        return this.status;
+    }
+
+    /**
+     * @return how the process ended
+     */
+    public Termination getTermination() {
+        return this.termination;
+    }
+
+    /**
+     * @return {@code true} if {@link #getTermination()} is {@link Termination#NORMAL}
+     */
+    public boolean isNormal() {
+        return this.termination == Termination.NORMAL;
+    }
+
+    /**
+     * @return last line of standard output, or {@code null} if it was not captured
+     * @see ProcessLauncher#getLastOutLine()
+     */
+    public String getLastOutLine() {
+        return this.lastOutLine;
+    }
+
+    /**
+     * @return last line of standard error, or {@code null} if it was not captured
+     * @see ProcessLauncher#getLastErrLine()
+     */
+    public String getLastErrLine() {
+        return this.lastErrLine;
+    }
+
+    /**
+     * @return last lines of standard output, oldest first, up to the number
+     * {@link ProcessLauncher#setTailLines(int) set on the launcher}
+     */
+    public List<String> getStdoutTail() {
+        return this.stdoutTail;
+    }
+
+    /**
+     * @return last lines of standard error, oldest first, or an empty list if it was
+     * merged with standard output
+     */
+    public List<String> getStderrTail() {
+        return this.stderrTail;
+    }
+
+    /**
+     * @return file that standard output was copied to, or {@code null}
+     */
+    public File getStdoutFile() {
+        return this.stdoutFile;
+    }
+
+    /**
+     * @return file that standard error was copied to, or {@code null}
+     */
+    public File getStderrFile() {
+        return this.stderrFile;
+    }
+
+    /**
+     * @return time at which the process was started, as returned by {@link System#currentTimeMillis()}
+     */
+    public long getStartTimeMillis() {
+        return this.startTimeMillis;
+    }
+
+    /**
+     * @return time between the process being started and its output having been
+     * completely copied to the destination(s), in milliseconds
+     */
+    public double getWallTimeMillis() {
+        return this.elapsedNanos / 1.0e6;
+    }
+
+    /**
+     * @return resources used by the process
+     */
+    public ResourceUsage getResourceUsage() {
+        return this.resourceUsage;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s, status %d after %.3fs", this.command.isEmpty() ? "" : this.command.get(0),
+                this.termination, this.status, this.elapsedNanos / 1.0e9);
+    }
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.common.threads;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Samples the CPU time and peak memory use of a running process from {@code /proc}
+ * on the {@link ProcessWatcher} thread. Once the process has exited and been reaped,
+ * its {@code /proc} entries are gone, so the last sample is what we report.
+ */
+final class ProcessSampler implements BooleanSupplier {
+
+    static final long sampleMillis = 50L;
+
+    // USER_HZ: fixed at 100 for user space on all the architectures we run on.
+    // There is no way to ask for sysconf(_SC_CLK_TCK) from Java.
+    private static final long clockTicksPerSecond = 100L;
+
+    private static final Path proc = Paths.get("/proc");
+
+    private final Process process;
+    private final Path statPath, statusPath;
+    private long nextSampleNanos = System.nanoTime();
+    private volatile long userTicks = -1L, systemTicks = -1L, peakRssKb = -1L;
+
+    private ProcessSampler(Process process, long pid) {
+        this.process = process;
+        this.statPath = proc.resolve(Long.toString(pid)).resolve("stat");
+        this.statusPath = proc.resolve(Long.toString(pid)).resolve("status");
+    }
+
+    /**
+     * Starts sampling {@code process}, if that is possible on this platform.
+     *
+     * @param process
+     * @return the sampler, or {@code null} if the process cannot be sampled
+     */
+    static ProcessSampler start(Process process) {
+        long pid = ProcessSampler.pidOf(process);
+        if ( pid <= 0L || ! Files.isDirectory(proc) )
+            return null;
+
+        ProcessSampler sampler = new ProcessSampler(process, pid);
+        // Take a first sample straight away, in case the process is very short-lived
+        sampler.getAsBoolean();
+        ProcessWatcher.watch(sampler);
+        return sampler;
+    }
+
+    // Process.pid() only exists from Java 9. On Java 8, the Unix implementation
+    // keeps the pid in a private field.
+    private static long pidOf(Process process) {
+        try {
+            Method m = Process.class.getMethod("pid");
+            return (Long) m.invoke(process);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            // Fall through to Java 8 approach
+        }
+        try {
+            Field f = process.getClass().getDeclaredField("pid");
+            f.setAccessible(true);
+            return f.getInt(process);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            return -1L;
+        }
+    }
+
+    @Override
+    public boolean getAsBoolean() {
+
+        if ( ! this.process.isAlive() )
+            return true;
+
+        long now = System.nanoTime();
+        if ( now - this.nextSampleNanos < 0L )
+            return false;
+        this.nextSampleNanos = now + sampleMillis * 1000000L;
+
+        try {
+            this.sampleStat(new String(Files.readAllBytes(this.statPath), StandardCharsets.US_ASCII));
+            this.sampleStatus(Files.readAllLines(this.statusPath, StandardCharsets.US_ASCII));
+        }
+        catch (IOException | RuntimeException e) {
+            // Process has just gone, or the format is not what we expect: keep what we have
+        }
+        return false;
+    }
+
+    private void sampleStat(String stat) {
+        // The command name (field 2) is in parentheses and may contain spaces, so
+        // count fields from the last ')'. utime, stime, cutime and cstime are fields 14-17.
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+        // fields[0] is field 3 (state)
+        this.userTicks = Long.parseLong(fields[11]) + Long.parseLong(fields[13]);
+        this.systemTicks = Long.parseLong(fields[12]) + Long.parseLong(fields[14]);
+    }
+
+    private void sampleStatus(List<String> status) {
+        for ( String line: status ) {
+            if ( line.startsWith("VmHWM:") ) {
+                long rss = Long.parseLong(line.substring(6).trim().split("\\s+")[0]);
+                if ( rss > this.peakRssKb )
+                    this.peakRssKb = rss;
+                return;
+            }
+        }
+    }
+
+    long getCpuUserMillis() {
+        long ticks = this.userTicks;
+        return ticks < 0L ? -1L : ticks * 1000L / clockTicksPerSecond;
+    }
+
+    long getCpuSystemMillis() {
+        long ticks = this.systemTicks;
+        return ticks < 0L ? -1L : ticks * 1000L / clockTicksPerSecond;
+    }
+
+    long getPeakRssKb() {
+        return this.peakRssKb;
+    }
+
+}
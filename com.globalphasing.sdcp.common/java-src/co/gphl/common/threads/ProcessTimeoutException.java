@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.common.threads;
+
+/**
+ * Thrown when a {@link java.lang.Process} has been killed because it
+ * ran for longer than the timeout it was given. The process had not
+ * failed in its own right, so the run may be worth retrying.
+ *
+ * @see ProcessLauncher#setTimeout(long, java.util.concurrent.TimeUnit)
+ */
+public class ProcessTimeoutException extends TerminationException {
+
+    // ProcessResult is not Serializable, and is only of interest locally
+    private final transient ProcessResult result;
+
+    public ProcessTimeoutException(String message, ProcessResult result) {
+        super(message);
+        this.result = result;
+    }
+
+    /**
+     * @return result of the process that was killed, or {@code null}
+     * if not available
+     */
+    public ProcessResult getResult() {
+        return this.result;
+    }
+
+    private static final long serialVersionUID = -3180433455328937713L;
+
+}
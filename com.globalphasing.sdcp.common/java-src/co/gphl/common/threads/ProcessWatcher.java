@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.common.threads;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Single daemon thread that supervises all processes started with
+ * {@link ProcessLauncher#startAsync(java.io.Writer, java.io.Writer, java.io.File, java.io.File, boolean, boolean)}.
+ *
+ * <p>Java 8 has no way of being notified when a {@link Process} exits
+ * ({@code Process.onExit()} only arrived in Java 9), so we poll: each
+ * registered check is called at a fixed interval until it reports that it
+ * has finished. The polling task only runs while there is something to check.</p>
+ */
+final class ProcessWatcher {
+
+    private static final Logger logger = Logger.getLogger(ProcessWatcher.class.getName());
+
+    static final long pollMillis = 10L;
+
+    private static final ProcessWatcher instance = new ProcessWatcher();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ProcessWatcher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Queue<BooleanSupplier> checks = new ConcurrentLinkedQueue<>();
+    private ScheduledFuture<?> task = null;
+
+    private ProcessWatcher() {
+    }
+
+    /**
+     * Registers a check to be called on the watcher thread until it returns {@code true}.
+     * A check that throws is dropped. Checks must not block.
+     *
+     * @param check
+     */
+    static void watch(BooleanSupplier check) {
+        ProcessWatcher.instance.add(check);
+    }
+
+    private synchronized void add(BooleanSupplier check) {
+        this.checks.add(check);
+        if ( this.task == null )
+            this.task = this.executor.scheduleWithFixedDelay(this::poll,
+                    0L, ProcessWatcher.pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+
+        this.checks.removeIf( check -> {
+            try {
+                return check.getAsBoolean();
+            }
+            catch (Throwable t) {
+                logger.log(Level.SEVERE, "BUG: process check failed: dropping it", t);
+                return true;
+            }
+        } );
+
+        synchronized (this) {
+            if ( this.checks.isEmpty() && this.task != null ) {
+                this.task.cancel(false);
+                this.task = null;
+            }
+        }
+    }
+
+}
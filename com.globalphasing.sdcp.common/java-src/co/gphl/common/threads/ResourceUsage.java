@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Global Phasing Ltd.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+
+package co.gphl.common.threads;
+
+/**
+ * Resources used by a process run by a {@link ProcessLauncher}. Instances are immutable.
+ *
+ * <p>CPU times and peak memory are taken from {@code /proc/<pid>/stat} and
+ * {@code /proc/<pid>/status}, which are sampled while the process runs. They are
+ * only available on Linux, and miss anything used in the last
+ * {@value ProcessSampler#sampleMillis}ms or so before the process exited. CPU
+ * times include those of descendants that the process has waited for.</p>
+ */
+public final class ResourceUsage {
+
+    private final long startLatencyNanos, stdoutBytes, stderrBytes;
+    private final long cpuUserMillis, cpuSystemMillis, peakRssKb;
+
+    ResourceUsage(long startLatencyNanos, long stdoutBytes, long stderrBytes,
+            long cpuUserMillis, long cpuSystemMillis, long peakRssKb) {
+        this.startLatencyNanos = startLatencyNanos;
+        this.stdoutBytes = stdoutBytes;
+        this.stderrBytes = stderrBytes;
+        this.cpuUserMillis = cpuUserMillis;
+        this.cpuSystemMillis = cpuSystemMillis;
+        this.peakRssKb = peakRssKb;
+    }
+
+    /**
+     * @return time between starting the process and the first byte of its output
+     * being read, in milliseconds, or {@code NaN} if it produced no output
+     */
+    public double getStartLatencyMillis() {
+        return this.startLatencyNanos < 0L ? Double.NaN : this.startLatencyNanos / 1.0e6;
+    }
+
+    /**
+     * @return number of bytes the process wrote to standard output (including
+     * standard error if the two were merged)
+     */
+    public long getStdoutBytes() {
+        return this.stdoutBytes;
+    }
+
+    /**
+     * @return number of bytes the process wrote to standard error, or {@code 0}
+     * if it was merged with standard output
+     */
+    public long getStderrBytes() {
+        return this.stderrBytes;
+    }
+
+    /**
+     * @return user CPU time in milliseconds, or {@code -1} if not known
+     */
+    public long getCpuUserMillis() {
+        return this.cpuUserMillis;
+    }
+
+    /**
+     * @return system CPU time in milliseconds, or {@code -1} if not known
+     */
+    public long getCpuSystemMillis() {
+        return this.cpuSystemMillis;
+    }
+
+    /**
+     * @return peak resident set size in kB, or {@code -1} if not known
+     */
+    public long getPeakRssKb() {
+        return this.peakRssKb;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if ( this.startLatencyNanos >= 0L )
+            sb.append(String.format("first output after %.3fs, ", this.startLatencyNanos / 1.0e9));
+        if ( this.cpuUserMillis >= 0L )
+            sb.append(String.format("cpu %.2fs user %.2fs sys, ",
+                    this.cpuUserMillis / 1000.0, this.cpuSystemMillis / 1000.0));
+        if ( this.peakRssKb >= 0L )
+            sb.append("peak rss ").append(this.peakRssKb).append("kB, ");
+        sb.append(this.stdoutBytes).append(" bytes stdout, ")
+            .append(this.stderrBytes).append(" bytes stderr");
+        return sb.toString();
+    }
+}